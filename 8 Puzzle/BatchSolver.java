@@ -0,0 +1,207 @@
+/* *****************************************************************************
+ *  Name: Chen Wahng
+ *  Date: Jult 18, 2019
+ *  Description: solve a stream of boards on a pool of threads
+ *  Usage:
+ *      java-algs4 BatchSolver [input file, - for stdin] [threads]
+ *                             [manhattan | conflict | walking | pattern database file]
+ *                             [astar | idastar | anytime] [time budget in ms]
+ *      each board is its dimension followed by its blocks, as in the puzzle files, one line of
+ *      moves is printed per board in input order, -1 for an unsolvable board
+ **************************************************************************** */
+
+import edu.princeton.cs.algs4.In;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * a batch solver reading boards one by one and solving them on a fixed pool of threads. The
+ * heuristic tables are built or mapped once and shared read-only by every thread, each thread
+ * reuses one Solver.Workspace for all its boards, and at most a few boards per thread are in
+ * flight, so memory stays bounded however long the input is. Results come out in input order.
+ */
+public final class BatchSolver {
+    private static final int WINDOW = 4; // boards in flight per thread
+    private final ExecutorService pool;
+    private final ThreadLocal<Solver.Workspace> workspaces
+            = ThreadLocal.withInitial(Solver.Workspace::new);
+    private final Solver.Algorithm algorithm;
+    private final String heuristic;
+    private final PatternDatabase database;
+    private final Map<Integer, Heuristic> heuristics = new HashMap<Integer, Heuristic>();
+    private final long budget;
+    private final int window;
+    private long[] latencies = new long[1 << 10]; // nanoseconds to solve each board
+    private int count;
+
+    /**
+     * a result on its way to the output
+     */
+    private static final class Result {
+        private final int moves;
+        private final long nanos;
+
+        public Result(int aMoves, long aNanos) {
+            moves = aMoves;
+            nanos = aNanos;
+        }
+    }
+
+    /**
+     * construct a batch solver
+     *
+     * @param threads    number of threads
+     * @param aHeuristic manhattan, conflict, walking, or the file of a pattern database
+     * @param anAlgorithm search algorithm
+     * @param aBudget    time budget of the anytime search in milliseconds
+     * @throws IllegalArgumentException when threads or the budget is not positive
+     */
+    public BatchSolver(int threads, String aHeuristic, Solver.Algorithm anAlgorithm,
+                       long aBudget) {
+        if (threads < 1 || aBudget < 1) throw new IllegalArgumentException();
+        if (aHeuristic == null || anAlgorithm == null) throw new IllegalArgumentException();
+        pool = Executors.newFixedThreadPool(threads);
+        window = WINDOW * threads;
+        heuristic = aHeuristic;
+        algorithm = anAlgorithm;
+        budget = aBudget;
+        boolean named = heuristic.equals("manhattan") || heuristic.equals("conflict")
+                || heuristic.equals("walking");
+        database = named ? null : PatternDatabase.load(Path.of(heuristic));
+    }
+
+    /**
+     * shared heuristic of a dimension, built on first use by the reading thread
+     *
+     * @param dim dimension of the boards
+     * @return the heuristic
+     */
+    private Heuristic heuristic(int dim) {
+        Heuristic h = heuristics.get(dim);
+        if (h != null) return h;
+        if (heuristic.equals("manhattan")) h = new Manhattan();
+        else if (heuristic.equals("conflict")) h = new LinearConflict();
+        else if (heuristic.equals("walking")) h = new WalkingDistance(dim);
+        else h = database;
+        heuristics.put(dim, h);
+        return h;
+    }
+
+    /**
+     * solve one board on the calling pool thread
+     */
+    private Result solve(Board board, Heuristic h) {
+        long start = System.nanoTime();
+        Solver.Options options = new Solver.Options().algorithm(algorithm).heuristic(h)
+                                                     .workspace(workspaces.get());
+        if (budget != Long.MAX_VALUE) options.timeBudget(budget);
+        Solver solver = new Solver(board, options);
+        return new Result(solver.moves(), System.nanoTime() - start);
+    }
+
+    /**
+     * solve every board of the input and print the moves of each in input order
+     *
+     * @param in  the input
+     * @param out the output
+     * @return number of boards solved
+     */
+    public int run(In in, Writer out) {
+        ArrayDeque<Future<Result>> flight = new ArrayDeque<Future<Result>>();
+        try {
+            while (!in.isEmpty()) {
+                int n = in.readInt();
+                int[][] blocks = new int[n][n];
+                for (int i = 0; i < n; ++i)
+                    for (int j = 0; j < n; ++j) blocks[i][j] = in.readInt();
+                Board board = new Board(blocks);
+                Heuristic h = heuristic(n);
+                flight.add(pool.submit(() -> solve(board, h)));
+                if (flight.size() >= window) write(flight.poll(), out);
+            }
+            while (!flight.isEmpty()) write(flight.poll(), out);
+            out.flush();
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        finally {
+            pool.shutdownNow();
+        }
+        return count;
+    }
+
+    /**
+     * wait for a result and print it
+     */
+    private void write(Future<Result> future, Writer out) throws IOException {
+        Result result;
+        try {
+            result = future.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while solving!", e);
+        }
+        catch (ExecutionException e) {
+            throw new IllegalStateException("Failed to solve a board!", e.getCause());
+        }
+        out.write(Integer.toString(result.moves));
+        out.write('\n');
+        if (count == latencies.length) latencies = Arrays.copyOf(latencies, 2 * count);
+        latencies[count++] = result.nanos;
+    }
+
+    /**
+     * latency of the boards solved so far at a percentile, nearest rank
+     *
+     * @param p percentile in range of (0, 100]
+     * @return the latency in milliseconds
+     * @throws IllegalArgumentException when no board was solved or p is out of range
+     */
+    public double percentile(double p) {
+        if (count == 0 || !(p > 0 && p <= 100)) throw new IllegalArgumentException();
+        long[] sorted = Arrays.copyOf(latencies, count);
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(p / 100 * count);
+        return sorted[rank - 1] / 1e6;
+    }
+
+    /**
+     * solve a stream of boards
+     *
+     * @param args input file or - for stdin, threads, heuristic, algorithm, time budget in ms
+     */
+    public static void main(String[] args) {
+        In in = args.length == 0 || args[0].equals("-") ? new In() : new In(args[0]);
+        int threads = args.length > 1 ? Integer.parseInt(args[1])
+                                      : Runtime.getRuntime().availableProcessors();
+        String heuristic = args.length > 2 ? args[2] : "conflict";
+        Solver.Algorithm algorithm = args.length > 3
+                                     ? Solver.Algorithm.valueOf(args[3].toUpperCase())
+                                     : Solver.Algorithm.ASTAR;
+        long budget = args.length > 4 ? Long.parseLong(args[4]) : Long.MAX_VALUE;
+        BatchSolver batch = new BatchSolver(threads, heuristic, algorithm, budget);
+        long start = System.nanoTime();
+        int boards = batch.run(in, new BufferedWriter(new OutputStreamWriter(System.out)));
+        double seconds = (System.nanoTime() - start) / 1e9;
+        if (boards == 0) return;
+        System.err.println(String.format("%d boards in %.3f s, %.1f boards/sec, "
+                                                 + "p50 = %.3f ms, p99 = %.3f ms",
+                                         boards, seconds, boards / seconds,
+                                         batch.percentile(50), batch.percentile(99)));
+    }
+}
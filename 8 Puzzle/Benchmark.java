@@ -0,0 +1,105 @@
+/* *****************************************************************************
+ *  Name: Chen Wahng
+ *  Date: Jult 18, 2019
+ *  Description: benchmark of the solver on a corpus of boards, recorded over time
+ *  Usage:
+ *      java-algs4 Benchmark [history csv] [corpus files]
+ *      e.g. java-algs4 Benchmark benchmark.csv corpus/*.txt
+ *      the corpus holds 10 boards in each file, 3-by-3 and 4-by-4 ones, graded by their fewest
+ *      moves: easy 8-12 and 15-20, medium 18-22 and 28-32, hard 26-31 and 38-42
+ **************************************************************************** */
+
+import edu.princeton.cs.algs4.In;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+
+/**
+ * a benchmark solving every board of the corpus files by A* with linear conflicts. After one
+ * warm-up pass it prints the counters and times of each file, and appends them with a time stamp
+ * to a CSV history, so a regression shows up as a jump between two lines of the history.
+ */
+public final class Benchmark {
+    private static final String HEADER = "time,file,algorithm,heuristic,boards,moves,expanded,"
+            + "generated,duplicates,peak frontier,setup ms,search ms,path ms";
+    private int boards;
+    private long moves;
+    private long expanded;
+    private long generated;
+    private long duplicates;
+    private long peakFrontier; // largest over the boards
+    private double setup;
+    private double search;
+    private double path;
+
+    /**
+     * solve every board of a corpus file
+     *
+     * @param file the corpus file
+     */
+    private Benchmark(String file) {
+        In in = new In(file);
+        while (!in.isEmpty()) {
+            int n = in.readInt();
+            int[][] blocks = new int[n][n];
+            for (int i = 0; i < n; ++i) for (int j = 0; j < n; ++j) blocks[i][j] = in.readInt();
+            Solver.Options options = new Solver.Options().heuristic(new LinearConflict())
+                                                         .statistics(true);
+            Solver solver = new Solver(new Board(blocks), options);
+            Solver.Statistics statistics = solver.statistics();
+            boards++;
+            moves += solver.moves();
+            expanded += statistics.expanded();
+            generated += statistics.generated();
+            duplicates += statistics.duplicates();
+            peakFrontier = Math.max(peakFrontier, statistics.peakFrontier());
+            setup += statistics.setupMillis();
+            search += statistics.searchMillis();
+            path += statistics.pathMillis();
+        }
+    }
+
+    /**
+     * one line of the history
+     */
+    private String csv(String time, String file) {
+        return String.format("%s,%s,astar,conflict,%d,%d,%d,%d,%d,%d,%.3f,%.3f,%.3f", time, file,
+                             boards, moves, expanded, generated, duplicates, peakFrontier, setup,
+                             search, path);
+    }
+
+    /**
+     * run the benchmark
+     *
+     * @param args history file followed by the corpus files
+     */
+    public static void main(String[] args) {
+        if (args.length < 2) throw new IllegalArgumentException("History and corpus required!");
+        for (int i = 1; i < args.length; ++i) new Benchmark(args[i]); // warm up
+        String time = Instant.now().toString();
+        Path history = Path.of(args[0]);
+        boolean fresh = !Files.exists(history);
+        try (PrintWriter out = new PrintWriter(new FileWriter(history.toFile(), true))) {
+            if (fresh) out.println(HEADER);
+            System.out.println(String.format("%-24s %6s %6s %10s %10s %10s %10s %10s",
+                                             "file", "boards", "moves", "expanded", "generated",
+                                             "duplicates", "peak", "search ms"));
+            for (int i = 1; i < args.length; ++i) {
+                Benchmark run = new Benchmark(args[i]);
+                System.out.println(String.format("%-24s %6d %6d %10d %10d %10d %10d %10.3f",
+                                                 args[i], run.boards, run.moves, run.expanded,
+                                                 run.generated, run.duplicates, run.peakFrontier,
+                                                 run.search));
+                out.println(run.csv(time, args[i]));
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -4,9 +4,8 @@
  *  Description: solution to the assignment 8puzzle
  **************************************************************************** */
 
-import edu.princeton.cs.algs4.StdRandom;
-
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -17,6 +16,9 @@ public final class Board {
     private final int[][] blocks;
     private Board twin;
     private int blank;
+    private final int hamming; // cached distances, updated in O(1) for each neighbor
+    private final int manhattan;
+    private int hash; // cached hash code, 0 until computed
 
     /**
      * Construct a board instance from an n-by-n array of blocks
@@ -34,6 +36,55 @@ public final class Board {
                 }
             }
         }
+        int count = 0, distance = 0;
+        for (int i = 0; i < dim * dim; ++i) {
+            count += misplaced(i, this.blocks[i / dim][i % dim]);
+            distance += distance(i, this.blocks[i / dim][i % dim]);
+        }
+        hamming = count;
+        manhattan = distance;
+    }
+
+    /**
+     * construct a neighbor board from blocks already moved, with its cached distances
+     *
+     * @param blocks    the blocks of the neighbor, owned by the new board
+     * @param blank     plain index of the blank
+     * @param hamming   hamming distance of the neighbor
+     * @param manhattan Manhattan distance of the neighbor
+     */
+    private Board(int[][] blocks, int blank, int hamming, int manhattan) {
+        this.blocks = blocks;
+        this.blank = blank;
+        this.hamming = hamming;
+        this.manhattan = manhattan;
+    }
+
+    /**
+     * contribution of a block to the hamming distance, every position but the last one counts
+     * when it does not hold its goal block
+     *
+     * @param position plain index of the position
+     * @param block    the block at the position
+     * @return 1 when counted, 0 otherwise
+     */
+    private int misplaced(int position, int block) {
+        int dim = blocks.length;
+        return position != dim * dim - 1 && block != position + 1 ? 1 : 0;
+    }
+
+    /**
+     * contribution of a block to the Manhattan distance
+     *
+     * @param position plain index of the position
+     * @param block    the block at the position
+     * @return distance of the block from its goal position, 0 for the blank
+     */
+    private int distance(int position, int block) {
+        if (block == 0) return 0;
+        int dim = blocks.length;
+        return Math.abs((block - 1) / dim - position / dim)
+                + Math.abs((block - 1) % dim - position % dim);
     }
 
     /**
@@ -45,19 +96,55 @@ public final class Board {
         return blocks.length;
     }
 
+    /**
+     * block at the given position, 0 for the blank
+     *
+     * @param row row of the block, in range of [0, n)
+     * @param col column of the block, in range of [0, n)
+     * @return the block
+     */
+    int tileAt(int row, int col) {
+        return blocks[row][col];
+    }
+
+    /**
+     * cell of the blank
+     *
+     * @return plain index of the blank
+     */
+    int blank() {
+        return blank;
+    }
+
+    /**
+     * the blocks in row-major order
+     *
+     * @return a new array of the blocks, 0 for the blank
+     */
+    int[] tiles() {
+        int dim = blocks.length;
+        int[] tiles = new int[dim * dim];
+        tiles(tiles);
+        return tiles;
+    }
+
+    /**
+     * copy the blocks in row-major order into a buffer
+     *
+     * @param tiles buffer of at least dim * dim blocks, 0 for the blank
+     */
+    void tiles(int[] tiles) {
+        int dim = blocks.length;
+        for (int i = 0; i < dim; ++i) System.arraycopy(blocks[i], 0, tiles, i * dim, dim);
+    }
+
     /**
      * number of blocks out of place
      *
      * @return hamming distance
      */
     public int hamming() {
-        int count = 0, dim = blocks.length;
-        for (int i = 0; i < dim; ++i) {
-            for (int j = 0; j < dim; ++j) {
-                if (blocks[i][j] != (i * dim + j + 1) && (i != dim - 1 || j != dim - 1)) count++;
-            }
-        }
-        return count;
+        return hamming;
     }
 
     /**
@@ -66,19 +153,23 @@ public final class Board {
      * @return Manhantan distance
      */
     public int manhattan() {
-        int count = 0, dim = blocks.length;
-        int x, y;
-        for (int i = 0; i < dim; ++i) {
-            for (int j = 0; j < dim; ++j) {
-                if (blocks[i][j] == 0 ||
-                        blocks[i][j] == i * dim + j + 1)
-                    continue;
-                x = (blocks[i][j] - 1) / dim;
-                y = (blocks[i][j] - 1) % dim;
-                count += Math.abs(x - i) + Math.abs(y - j);
-            }
-        }
-        return count;
+        return manhattan;
+    }
+
+    /**
+     * sum of the fewest moves of each group of an additive pattern database, never more than the
+     * moves left to the goal
+     *
+     * @param database the pattern database of this dimension
+     * @return pattern database distance
+     * @throws IllegalArgumentException when the database is of another dimension
+     */
+    public int patternDistance(PatternDatabase database) {
+        int dim = blocks.length;
+        if (database == null || database.dimension() != dim) throw new IllegalArgumentException();
+        int[] position = new int[dim * dim];
+        for (int i = 0; i < dim * dim; ++i) position[blocks[i / dim][i % dim]] = i;
+        return database.distance(position);
     }
 
     /**
@@ -87,40 +178,50 @@ public final class Board {
      * @return true for the goal board, vice versa
      */
     public boolean isGoal() {
-        return hamming() == 0;
+        return hamming == 0;
     }
 
     /**
-     * a board that is obtained by exchanging any pair of blocks
+     * a board that is obtained by exchanging any pair of blocks, the first two blocks in row-major
+     * order are exchanged
      *
      * @return one possible twin board
      */
     public Board twin() {
         if (twin != null) return twin;
         int dim = blocks.length;
-        int x = StdRandom.uniform(dim);
-        int y = StdRandom.uniform(dim);
-        while (blocks[x][y] == 0) {
-            x = StdRandom.uniform(dim);
-            y = StdRandom.uniform(dim);
-        }
-        int x2 = StdRandom.uniform(dim);
-        int y2 = StdRandom.uniform(dim);
-        while (blocks[x2][y2] == 0 || (x == x2 && y == y2)) {
-            x2 = StdRandom.uniform(dim);
-            y2 = StdRandom.uniform(dim);
-        }
-        int[][] newBlocks = new int[dim][dim];
-        for (int i = 0; i < dim; ++i) {
-            for (int j = 0; j < dim; ++j) {
-                newBlocks[i][j] = blocks[i][j];
-            }
-        }
-        swap(newBlocks, x, y, x2, y2);
+        int first = blocks[0][0] == 0 ? 1 : 0;
+        int second = first + 1;
+        if (second == blank) second++;
+        int[][] newBlocks = new int[dim][];
+        for (int i = 0; i < dim; ++i) newBlocks[i] = blocks[i].clone();
+        swap(newBlocks, first / dim, first % dim, second / dim, second % dim);
         twin = new Board(newBlocks);
         return twin;
     }
 
+    /**
+     * can this board reach the goal board? Every move changes the parity of the inversions of the
+     * blocks by the parity of the rows the blank crosses, so an odd board is solvable iff its
+     * inversions are even, and an even board iff its inversions plus the row of the blank are odd
+     *
+     * @return whether the board is solvable
+     */
+    public boolean isSolvable() {
+        int dim = blocks.length;
+        // count the inversions with a Fenwick tree over the block values, right to left
+        int[] tree = new int[dim * dim];
+        long inversions = 0;
+        for (int i = dim * dim - 1; i >= 0; --i) {
+            int block = blocks[i / dim][i % dim];
+            if (block == 0) continue;
+            for (int j = block - 1; j > 0; j -= j & -j) inversions += tree[j];
+            for (int j = block; j < tree.length; j += j & -j) tree[j]++;
+        }
+        if (dim % 2 == 1) return inversions % 2 == 0;
+        return (inversions + blank / dim) % 2 == 1;
+    }
+
     /**
      * is this board equals to y?
      *
@@ -143,6 +244,38 @@ public final class Board {
         return true;
     }
 
+    /**
+     * hash code consistent with equals, derived from the packed key for boards up to 4-by-4
+     *
+     * @return the hash code
+     */
+    public int hashCode() {
+        if (hash == 0) {
+            long h = blocks.length <= 4 ? key() : Arrays.deepHashCode(blocks);
+            h *= 0x9e3779b97f4a7c15L;
+            hash = (int) (h ^ (h >>> 32));
+            if (hash == 0) hash = 1;
+        }
+        return hash;
+    }
+
+    /**
+     * compact encoding of a board up to 4-by-4, the block at position i (row-major) takes bits
+     * [4i, 4i + 4), two boards of the same dimension are equal iff their keys are equal
+     *
+     * @return the packed key
+     * @throws IllegalArgumentException when the board is larger than 4-by-4
+     */
+    public long key() {
+        int dim = blocks.length;
+        if (dim > 4) throw new IllegalArgumentException("Board is too large to be packed!");
+        long key = 0;
+        for (int i = 0; i < dim; ++i)
+            for (int j = 0; j < dim; ++j)
+                key |= (long) blocks[i][j] << (4 * (i * dim + j));
+        return key;
+    }
+
     /**
      * helper function to swap two values in a 2d array
      *
@@ -159,20 +292,25 @@ public final class Board {
     }
 
     /**
-     * helper function to create a twin board coming from switching one pair of random non-blank
-     * sites. Swap the board twice to keep it immute
+     * helper function to create the neighbor board where the block at (x2, y2) slides into the
+     * blank at (x1, y1), the distances of the neighbor follow from the two positions only
      *
-     * @param x1 x-coordinate of the first site
-     * @param y1 y-coordinate of the first site
-     * @param x2 x-coordinate of the second site
-     * @param y2 y-coordinate of the second site
-     * @return the twin board
+     * @param x1 x-coordinate of the blank
+     * @param y1 y-coordinate of the blank
+     * @param x2 x-coordinate of the block
+     * @param y2 y-coordinate of the block
+     * @return the neighbor board
      */
     private Board create(int x1, int y1, int x2, int y2) {
-        swap(blocks, x1, y1, x2, y2);
-        Board newBoard = new Board(blocks);
-        swap(blocks, x1, y1, x2, y2);
-        return newBoard;
+        int dim = blocks.length, block = blocks[x2][y2];
+        int from = x2 * dim + y2, to = x1 * dim + y1;
+        int[][] newBlocks = new int[dim][];
+        for (int i = 0; i < dim; ++i) newBlocks[i] = blocks[i].clone();
+        swap(newBlocks, x1, y1, x2, y2);
+        int newHamming = hamming - misplaced(from, block) - misplaced(to, 0)
+                + misplaced(from, 0) + misplaced(to, block);
+        int newManhattan = manhattan - distance(from, block) + distance(to, block);
+        return new Board(newBlocks, from, newHamming, newManhattan);
     }
 
     /**
@@ -0,0 +1,114 @@
+/* *****************************************************************************
+ *  Name: Chen Wahng
+ *  Date: Jult 18, 2019
+ *  Description: bucketed priority queue for small integer priorities
+ **************************************************************************** */
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * a mutable priority queue for small nonnegative integer priorities, an array of stacks indexed
+ * by priority and then by depth. Insert is O(1), delMin is amortized O(1) as long as priorities
+ * only grow slowly, and among the items of the lowest priority the deepest one comes first.
+ *
+ * @param <Item> type of the items
+ */
+public final class BucketQueue<Item> {
+    private Object[][][] stacks = new Object[16][][]; // stacks[priority][depth]
+    private int[][] sizes = new int[16][];
+    private int[] counts = new int[16]; // number of items of each priority
+    private int[] deepest = new int[16]; // no stack of the priority is deeper than this
+    private int min; // no item has a lower priority than this
+    private int size;
+
+    /**
+     * is the queue empty?
+     *
+     * @return true for empty, vice versa
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * number of items
+     *
+     * @return # of items
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * insert an item
+     *
+     * @param item     the item
+     * @param priority its priority, lower first
+     * @param depth    its depth, deeper first among equal priorities
+     * @throws IllegalArgumentException when priority or depth is negative
+     */
+    public void insert(Item item, int priority, int depth) {
+        if (priority < 0 || depth < 0) throw new IllegalArgumentException();
+        if (priority >= counts.length) {
+            int capacity = Math.max(2 * counts.length, priority + 1);
+            stacks = Arrays.copyOf(stacks, capacity);
+            sizes = Arrays.copyOf(sizes, capacity);
+            counts = Arrays.copyOf(counts, capacity);
+            deepest = Arrays.copyOf(deepest, capacity);
+        }
+        if (stacks[priority] == null) {
+            stacks[priority] = new Object[Math.max(16, depth + 1)][];
+            sizes[priority] = new int[stacks[priority].length];
+        }
+        if (depth >= stacks[priority].length) {
+            int capacity = Math.max(2 * stacks[priority].length, depth + 1);
+            stacks[priority] = Arrays.copyOf(stacks[priority], capacity);
+            sizes[priority] = Arrays.copyOf(sizes[priority], capacity);
+        }
+        Object[] stack = stacks[priority][depth];
+        int top = sizes[priority][depth];
+        if (stack == null) stack = new Object[16];
+        else if (top == stack.length) stack = Arrays.copyOf(stack, 2 * top);
+        stacks[priority][depth] = stack;
+        stack[top] = item;
+        sizes[priority][depth]++;
+        counts[priority]++;
+        deepest[priority] = Math.max(deepest[priority], depth);
+        if (size == 0 || priority < min) min = priority;
+        size++;
+    }
+
+    /**
+     * lowest priority of the items
+     *
+     * @return the lowest priority
+     * @throws NoSuchElementException when the queue is empty
+     */
+    public int minPriority() {
+        if (size == 0) throw new NoSuchElementException();
+        while (counts[min] == 0) min++;
+        return min;
+    }
+
+    /**
+     * remove the deepest item among those of the lowest priority
+     *
+     * @return the item
+     * @throws NoSuchElementException when the queue is empty
+     */
+    @SuppressWarnings("unchecked")
+    public Item delMin() {
+        int priority = minPriority();
+        int depth = deepest[priority];
+        while (sizes[priority][depth] == 0) depth--;
+        deepest[priority] = depth;
+        int top = --sizes[priority][depth];
+        Object[] stack = stacks[priority][depth];
+        Item item = (Item) stack[top];
+        stack[top] = null;
+        counts[priority]--;
+        size--;
+        return item;
+    }
+}
@@ -0,0 +1,213 @@
+/* *****************************************************************************
+ *  Name: Chen Wahng
+ *  Date: Jult 18, 2019
+ *  Description: exact distance table of every board of a small puzzle
+ *  Usage:
+ *      javac-algs4 DistanceTable.java
+ *      java-algs4 DistanceTable [dimension, at most 3] [output file]
+ **************************************************************************** */
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * an immutable table of the fewest moves to the goal for every board of a puzzle up to 3-by-3,
+ * indexed by the Lehmer code of the blocks, so a 3-by-3 table takes 9! bytes. It is generated
+ * once by a breadth-first search from the goal and memory-mapped read-only, solving a board then
+ * walks down the table without any search.
+ */
+public final class DistanceTable {
+    private static final int MAGIC = 0x44495354; // "DIST"
+    private static final int HEADER = 8;
+    private static final byte UNSOLVABLE = -1;
+    private final int dim;
+    private final ByteBuffer table;
+
+    /**
+     * construct a table over distances already in a buffer
+     *
+     * @param dim   board dimension
+     * @param table buffer holding the distances after the header
+     */
+    private DistanceTable(int dim, ByteBuffer table) {
+        this.dim = dim;
+        this.table = table;
+    }
+
+    /**
+     * number of boards of a dimension
+     *
+     * @param dim board dimension
+     * @return (dim * dim)!
+     */
+    private static int boards(int dim) {
+        int count = 1;
+        for (int i = 2; i <= dim * dim; ++i) count *= i;
+        return count;
+    }
+
+    /**
+     * Lehmer code of the blocks, the number of smaller blocks after each position as a digit of
+     * factorial base
+     *
+     * @param blocks blocks in row-major order, 0 for the blank
+     * @return rank in [0, (n * n)!)
+     */
+    static int rank(int[] blocks) {
+        int rank = 0;
+        for (int i = 0; i < blocks.length; ++i) {
+            int smaller = 0;
+            for (int j = i + 1; j < blocks.length; ++j) if (blocks[j] < blocks[i]) smaller++;
+            rank = rank * (blocks.length - i) + smaller;
+        }
+        return rank;
+    }
+
+    /**
+     * blocks of a Lehmer code
+     *
+     * @param rank   the code
+     * @param blocks receives the blocks in row-major order
+     */
+    private static void unrank(int rank, int[] blocks) {
+        int cells = blocks.length;
+        int[] digits = new int[cells];
+        for (int i = cells - 1; i >= 0; --i) {
+            digits[i] = rank % (cells - i);
+            rank /= cells - i;
+        }
+        boolean[] used = new boolean[cells];
+        for (int i = 0; i < cells; ++i) {
+            int block = -1;
+            for (int free = digits[i]; free >= 0; free -= used[block] ? 0 : 1) block++;
+            used[block] = true;
+            blocks[i] = block;
+        }
+    }
+
+    /**
+     * breadth-first search from the goal over the Lehmer codes
+     *
+     * @param dim board dimension
+     * @return fewest moves of every board, UNSOLVABLE for boards out of reach
+     */
+    private static byte[] search(int dim) {
+        int cells = dim * dim;
+        byte[] distance = new byte[boards(dim)];
+        Arrays.fill(distance, UNSOLVABLE);
+        int[] queue = new int[distance.length / 2];
+        int[] blocks = new int[cells];
+        int[] rowStep = { -1, 1, 0, 0 }, colStep = { 0, 0, -1, 1 };
+        for (int i = 0; i < cells - 1; ++i) blocks[i] = i + 1;
+        int head = 0, tail = 0;
+        queue[tail++] = rank(blocks);
+        distance[queue[0]] = 0;
+        while (head < tail) {
+            int current = queue[head++];
+            unrank(current, blocks);
+            int blank = 0;
+            while (blocks[blank] != 0) blank++;
+            for (int m = 0; m < 4; ++m) {
+                int row = blank / dim + rowStep[m], col = blank % dim + colStep[m];
+                if (row < 0 || row >= dim || col < 0 || col >= dim) continue;
+                int target = row * dim + col;
+                blocks[blank] = blocks[target];
+                blocks[target] = 0;
+                int next = rank(blocks);
+                blocks[target] = blocks[blank];
+                blocks[blank] = 0;
+                if (distance[next] != UNSOLVABLE) continue;
+                distance[next] = (byte) (distance[current] + 1);
+                queue[tail++] = next;
+            }
+        }
+        return distance;
+    }
+
+    /**
+     * generate the table of a dimension and write it to a file
+     *
+     * @param dim  board dimension, 2 or 3
+     * @param file output file, replaced if it exists
+     * @throws IllegalArgumentException when the dimension is not supported
+     * @throws UncheckedIOException     when the file cannot be written
+     */
+    public static void generate(int dim, Path file) {
+        if (dim < 2 || dim > 3) throw new IllegalArgumentException();
+        try (OutputStream stream = Files.newOutputStream(file);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream))) {
+            out.writeInt(MAGIC);
+            out.writeInt(dim);
+            out.write(search(dim));
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * memory-map a table file read-only
+     *
+     * @param file the table file
+     * @return the table
+     * @throws IllegalArgumentException when the file is not a valid table
+     * @throws UncheckedIOException     when the file cannot be mapped
+     */
+    public static DistanceTable load(Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (channel.size() < HEADER || buffer.getInt(0) != MAGIC)
+                throw new IllegalArgumentException("Not a distance table!");
+            int dim = buffer.getInt(4);
+            if (dim < 2 || dim > 3 || channel.size() != HEADER + boards(dim))
+                throw new IllegalArgumentException("Truncated distance table!");
+            return new DistanceTable(dim, buffer);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * board dimension of the table
+     *
+     * @return board dimension n
+     */
+    public int dimension() {
+        return dim;
+    }
+
+    /**
+     * fewest moves from a board to the goal
+     *
+     * @param board a board of the table dimension
+     * @return # of moves, -1 for an unsolvable board
+     * @throws IllegalArgumentException when the board is of another dimension
+     */
+    public int distance(Board board) {
+        if (board == null || board.dimension() != dim) throw new IllegalArgumentException();
+        int[] blocks = new int[dim * dim];
+        for (int i = 0; i < blocks.length; ++i) blocks[i] = board.tileAt(i / dim, i % dim);
+        return table.get(HEADER + rank(blocks));
+    }
+
+    /**
+     * generate a table file
+     *
+     * @param args dimension and output file
+     */
+    public static void main(String[] args) {
+        long start = System.currentTimeMillis();
+        generate(Integer.parseInt(args[0]), Path.of(args[1]));
+        System.out.printf("Generated %s in %d ms\n", args[1], System.currentTimeMillis() - start);
+    }
+}
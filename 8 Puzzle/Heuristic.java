@@ -0,0 +1,45 @@
+/* *****************************************************************************
+ *  Name: Chen Wahng
+ *  Date: Jult 18, 2019
+ *  Description: admissible heuristics of the sliding puzzle, updated move by move
+ **************************************************************************** */
+
+/**
+ * an admissible estimate of the moves left to the goal. The estimate is kept in a packed state
+ * that is computed once from scratch and then updated for every move. The low 16 bits of the
+ * state hold the estimate, and an implementation may keep whatever it needs for a cheap update
+ * in the bits above. Implementations are immutable and safe to share between threads.
+ */
+public interface Heuristic {
+    /**
+     * estimate carried by a state
+     *
+     * @param state the state
+     * @return the moves left at least
+     */
+    static int estimate(long state) {
+        return (int) (state & 0xFFFF);
+    }
+
+    /**
+     * state of a board, computed from scratch
+     *
+     * @param tiles the blocks in row-major order, 0 for the blank
+     * @param dim   dimension of the board
+     * @return the state
+     * @throws IllegalArgumentException when the dimension is not supported
+     */
+    long initial(int[] tiles, int dim);
+
+    /**
+     * state after one block slid into the blank
+     *
+     * @param state the state before the move
+     * @param tiles the blocks after the move
+     * @param dim   dimension of the board
+     * @param from  cell the block left, the blank after the move
+     * @param to    cell the block moved to, the blank before the move
+     * @return the state after the move
+     */
+    long move(long state, int[] tiles, int dim, int from, int to);
+}
@@ -0,0 +1,125 @@
+/* *****************************************************************************
+ *  Name: Chen Wahng
+ *  Date: Jult 18, 2019
+ *  Description: bucketed priority queue of ints for small integer priorities
+ **************************************************************************** */
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * the primitive counterpart of BucketQueue, queuing int items such as indices into an arena of
+ * search nodes without boxing them
+ */
+public final class IntBucketQueue {
+    private int[][][] stacks = new int[16][][]; // stacks[priority][depth]
+    private int[][] sizes = new int[16][];
+    private int[] counts = new int[16]; // number of items of each priority
+    private int[] deepest = new int[16]; // no stack of the priority is deeper than this
+    private int min; // no item has a lower priority than this
+    private int highest; // no item was inserted with a higher priority since the last clear
+    private int size;
+
+    /**
+     * is the queue empty?
+     *
+     * @return true for empty, vice versa
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * number of items
+     *
+     * @return # of items
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * remove all items, keeping the stacks for reuse, in time of the priorities used since the
+     * last clear and the stacks still holding items
+     */
+    public void clear() {
+        for (int priority = 0; priority <= highest; ++priority) {
+            if (counts[priority] > 0) Arrays.fill(sizes[priority], 0, deepest[priority] + 1, 0);
+            counts[priority] = 0;
+            deepest[priority] = 0;
+        }
+        highest = 0;
+        min = 0;
+        size = 0;
+    }
+
+    /**
+     * insert an item
+     *
+     * @param item     the item
+     * @param priority its priority, lower first
+     * @param depth    its depth, deeper first among equal priorities
+     * @throws IllegalArgumentException when priority or depth is negative
+     */
+    public void insert(int item, int priority, int depth) {
+        if (priority < 0 || depth < 0) throw new IllegalArgumentException();
+        if (priority >= counts.length) {
+            int capacity = Math.max(2 * counts.length, priority + 1);
+            stacks = Arrays.copyOf(stacks, capacity);
+            sizes = Arrays.copyOf(sizes, capacity);
+            counts = Arrays.copyOf(counts, capacity);
+            deepest = Arrays.copyOf(deepest, capacity);
+        }
+        if (stacks[priority] == null) {
+            stacks[priority] = new int[Math.max(16, depth + 1)][];
+            sizes[priority] = new int[stacks[priority].length];
+        }
+        if (depth >= stacks[priority].length) {
+            int capacity = Math.max(2 * stacks[priority].length, depth + 1);
+            stacks[priority] = Arrays.copyOf(stacks[priority], capacity);
+            sizes[priority] = Arrays.copyOf(sizes[priority], capacity);
+        }
+        int[] stack = stacks[priority][depth];
+        int top = sizes[priority][depth];
+        if (stack == null) stack = new int[16];
+        else if (top == stack.length) stack = Arrays.copyOf(stack, 2 * top);
+        stacks[priority][depth] = stack;
+        stack[top] = item;
+        sizes[priority][depth]++;
+        counts[priority]++;
+        deepest[priority] = Math.max(deepest[priority], depth);
+        if (size == 0 || priority < min) min = priority;
+        highest = Math.max(highest, priority);
+        size++;
+    }
+
+    /**
+     * lowest priority of the items
+     *
+     * @return the lowest priority
+     * @throws NoSuchElementException when the queue is empty
+     */
+    public int minPriority() {
+        if (size == 0) throw new NoSuchElementException();
+        while (counts[min] == 0) min++;
+        return min;
+    }
+
+    /**
+     * remove the deepest item among those of the lowest priority
+     *
+     * @return the item
+     * @throws NoSuchElementException when the queue is empty
+     */
+    public int delMin() {
+        int priority = minPriority();
+        int depth = deepest[priority];
+        while (sizes[priority][depth] == 0) depth--;
+        deepest[priority] = depth;
+        int top = --sizes[priority][depth];
+        int item = stacks[priority][depth][top];
+        counts[priority]--;
+        size--;
+        return item;
+    }
+}
@@ -0,0 +1,92 @@
+/* *****************************************************************************
+ *  Name: Chen Wahng
+ *  Date: Jult 18, 2019
+ *  Description: Manhattan distance plus linear conflicts heuristic of the sliding puzzle
+ **************************************************************************** */
+
+/**
+ * Manhattan distance plus linear conflicts. The blocks of a line (row or column) whose goal
+ * line it is must keep their goal order to reach home, so all but a longest increasing run of
+ * them have to leave the line and come back, 2 moves each on top of the Manhattan distance. The
+ * state packs the estimate, the Manhattan distance in bits [16, 32) and the number of blocks in
+ * conflict above. A move changes the line of the moved block across its direction only, so
+ * only that line is counted again, in O(n) for an n-by-n board and without allocating. Boards
+ * up to 31-by-31 are supported, the largest whose worst estimate, a Manhattan distance below
+ * 2 n^2 (n - 1) plus 2 moves for each of at most 2 n (n - 1) blocks in conflict, fits in 16 bits.
+ */
+public final class LinearConflict implements Heuristic {
+    private static final long MASK = 0xFFFF;
+
+    public long initial(int[] tiles, int dim) {
+        if (2L * dim * (dim - 1) * (dim + 2) > MASK)
+            throw new IllegalArgumentException("Board too large!");
+        int manhattan = (int) new Manhattan().initial(tiles, dim), conflicts = 0;
+        for (int line = 0; line < dim; ++line) {
+            conflicts += conflicts(tiles, dim, line * dim, 1, -1, -1);
+            conflicts += conflicts(tiles, dim, line, dim, -1, -1);
+        }
+        return state(manhattan, conflicts);
+    }
+
+    public long move(long state, int[] tiles, int dim, int from, int to) {
+        int tile = tiles[to];
+        int manhattan = (int) (state >>> 16 & MASK), conflicts = (int) (state >>> 32);
+        manhattan += Manhattan.distance(tile, to, dim) - Manhattan.distance(tile, from, dim);
+        // a vertical move changes the set of rows, a horizontal one the set of columns, and only
+        // the line the block belongs to by its goal matters
+        int first, step, line;
+        if (from % dim == to % dim) {
+            line = (tile - 1) / dim;
+            first = line * dim;
+            step = 1;
+        }
+        else {
+            line = (tile - 1) % dim;
+            first = line;
+            step = dim;
+        }
+        boolean left = step == 1 ? from / dim == line : from % dim == line;
+        boolean entered = step == 1 ? to / dim == line : to % dim == line;
+        if (left || entered) {
+            conflicts -= conflicts(tiles, dim, first, step, from, to);
+            conflicts += conflicts(tiles, dim, first, step, -1, -1);
+        }
+        return state(manhattan, conflicts);
+    }
+
+    /**
+     * pack a state
+     */
+    private static long state(int manhattan, int conflicts) {
+        return (manhattan + 2L * conflicts) | (long) manhattan << 16 | (long) conflicts << 32;
+    }
+
+    /**
+     * number of blocks of a line out of a longest run in goal order, reading the blocks of
+     * cells a and b swapped, which gives the line before a move. The smallest last goal position
+     * of the runs of each length increases with the length, so the tails are kept as a bit set
+     * of goal positions, and a block replaces the least tail not below its goal.
+     *
+     * @param tiles the blocks
+     * @param dim   dimension of the board
+     * @param first first cell of the line
+     * @param step  distance between two cells of the line, 1 for a row and dim for a column
+     * @param a     a cell to swap, -1 for none
+     * @param b     the other cell to swap
+     * @return # of blocks in conflict
+     */
+    private static int conflicts(int[] tiles, int dim, int first, int step, int a, int b) {
+        long tails = 0; // smallest last goal position of the runs of each length
+        int members = 0, line = step == 1 ? first / dim : first;
+        for (int i = 0, cell = first; i < dim; ++i, cell += step) {
+            int tile = cell == a ? tiles[b] : cell == b ? tiles[a] : tiles[cell];
+            if (tile == 0) continue;
+            if ((step == 1 ? (tile - 1) / dim : (tile - 1) % dim) != line) continue;
+            int goal = step == 1 ? (tile - 1) % dim : (tile - 1) / dim;
+            members++;
+            long above = tails & -1L << goal;
+            tails = tails ^ Long.lowestOneBit(above) | 1L << goal;
+        }
+        return members - Long.bitCount(tails);
+    }
+}
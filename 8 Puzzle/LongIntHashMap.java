@@ -0,0 +1,141 @@
+/* *****************************************************************************
+ *  Name: Chen Wahng
+ *  Date: Jult 18, 2019
+ *  Description: primitive hash map from long to int for the search of the 8 puzzle
+ **************************************************************************** */
+
+import java.util.Arrays;
+
+/**
+ * a mutable open addressing hash map with linear probing from long keys to int values, keeping
+ * keys and values in two primitive arrays so that no entry is ever boxed. A slot is taken when
+ * it is stamped with the current generation, so clearing the map only starts a new generation.
+ */
+public final class LongIntHashMap {
+    private long[] keys;
+    private int[] values;
+    private int[] stamps; // generation of the key in each slot
+    private int generation = 1;
+    private int size;
+
+    /**
+     * construct an empty map
+     *
+     * @param expected number of keys expected, the map grows beyond it
+     */
+    public LongIntHashMap(int expected) {
+        int capacity = Integer.highestOneBit(Math.max(4, expected * 2 - 1)) << 1;
+        keys = new long[capacity];
+        values = new int[capacity];
+        stamps = new int[capacity];
+    }
+
+    /**
+     * spread the bits of a key, the finalizer of MurmurHash3
+     *
+     * @param key the key
+     * @return the mixed hash
+     */
+    private static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        return key ^ (key >>> 33);
+    }
+
+    /**
+     * slot holding the key, or the empty slot where it would be inserted
+     *
+     * @param key the key
+     * @return index of the slot
+     */
+    private int slot(long key) {
+        int mask = keys.length - 1;
+        int i = (int) mix(key) & mask;
+        while (stamps[i] == generation && keys[i] != key) i = (i + 1) & mask;
+        return i;
+    }
+
+    /**
+     * value of a key
+     *
+     * @param key     the key
+     * @param missing value returned when the key is absent
+     * @return the value, or missing
+     */
+    public int get(long key, int missing) {
+        int i = slot(key);
+        return stamps[i] == generation ? values[i] : missing;
+    }
+
+    /**
+     * does the map contain the key?
+     *
+     * @param key the key
+     * @return whether the key is present
+     */
+    public boolean containsKey(long key) {
+        return stamps[slot(key)] == generation;
+    }
+
+    /**
+     * associate a value with a key, replacing the old value
+     *
+     * @param key   the key
+     * @param value the value
+     */
+    public void put(long key, int value) {
+        int i = slot(key);
+        if (stamps[i] != generation) {
+            keys[i] = key;
+            stamps[i] = generation;
+            size++;
+            // keep the load factor at most 1/2
+            if (2 * size > keys.length) {
+                resize();
+                i = slot(key);
+            }
+        }
+        values[i] = value;
+    }
+
+    /**
+     * number of keys
+     *
+     * @return # of keys
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * remove all keys, keeping the capacity, in O(1) but once every 2^32 clears
+     */
+    public void clear() {
+        if (++generation == 0) {
+            Arrays.fill(stamps, 0);
+            generation = 1;
+        }
+        size = 0;
+    }
+
+    /**
+     * double the capacity and reinsert every key
+     */
+    private void resize() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        int[] oldStamps = stamps;
+        keys = new long[oldKeys.length * 2];
+        values = new int[oldValues.length * 2];
+        stamps = new int[oldStamps.length * 2];
+        for (int i = 0; i < oldKeys.length; ++i) {
+            if (oldStamps[i] != generation) continue;
+            int j = slot(oldKeys[i]);
+            keys[j] = oldKeys[i];
+            values[j] = oldValues[i];
+            stamps[j] = generation;
+        }
+    }
+}
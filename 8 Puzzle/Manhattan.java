@@ -0,0 +1,34 @@
+/* *****************************************************************************
+ *  Name: Chen Wahng
+ *  Date: Jult 18, 2019
+ *  Description: Manhattan distance heuristic of the sliding puzzle
+ **************************************************************************** */
+
+/**
+ * sum of the Manhattan distances of the blocks from their goal cells, the state is the
+ * distance itself and a move changes it by the moved block alone, in O(1)
+ */
+public final class Manhattan implements Heuristic {
+    /**
+     * Manhattan distance of a block from its goal cell
+     *
+     * @param tile the block, not the blank
+     * @param cell its cell
+     * @param dim  dimension of the board
+     * @return the distance
+     */
+    static int distance(int tile, int cell, int dim) {
+        return Math.abs((tile - 1) / dim - cell / dim) + Math.abs((tile - 1) % dim - cell % dim);
+    }
+
+    public long initial(int[] tiles, int dim) {
+        int sum = 0;
+        for (int i = 0; i < tiles.length; ++i) if (tiles[i] != 0) sum += distance(tiles[i], i, dim);
+        return sum;
+    }
+
+    public long move(long state, int[] tiles, int dim, int from, int to) {
+        int tile = tiles[to];
+        return state + distance(tile, to, dim) - distance(tile, from, dim);
+    }
+}
@@ -0,0 +1,380 @@
+/* *****************************************************************************
+ *  Name: Chen Wahng
+ *  Date: Jult 18, 2019
+ *  Description: additive disjoint pattern database heuristic for the sliding puzzle
+ *  Usage:
+ *      javac-algs4 PatternDatabase.java
+ *      java-algs4 PatternDatabase [dimension] [output file] [groups, e.g. 1,2,3,4,5,6 ...]
+ *      the groups default to the 6-6-3 partition of the 4-by-4 puzzle
+ **************************************************************************** */
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * an immutable additive pattern database. The blocks are split into disjoint groups, and for
+ * every placement of the blocks of a group the table stores the fewest moves of those blocks
+ * needed to bring them home, other blocks being indistinguishable. Moves of other blocks cost
+ * nothing, so the sum over the groups never overestimates. The tables are generated once by
+ * main into a binary file that is memory-mapped read-only, so the pages are shared by every
+ * JVM on the host. As a heuristic the state is the sum itself, and a move looks up the group of
+ * the moved block alone.
+ */
+public final class PatternDatabase implements Heuristic {
+    private static final int MAGIC = 0x50444231; // "PDB1"
+    private final int dim;
+    private final int[][] groups;
+    private final int[] offsets; // offset of the table of each group in the buffer
+    private final int[] groupOf; // group of each block, -1 for blocks out of every group
+    private final int[] indexOf; // index of each block in its group
+    private final long[][] weights; // weight of the rank digit of each block of each group
+    private final ByteBuffer tables;
+
+    /**
+     * construct a database over tables already in a buffer
+     *
+     * @param dim     board dimension
+     * @param groups  blocks of each group
+     * @param tables  buffer holding the tables of the groups one after another
+     * @param base    offset of the first table
+     */
+    private PatternDatabase(int dim, int[][] groups, ByteBuffer tables, int base) {
+        this.dim = dim;
+        this.groups = groups;
+        this.tables = tables;
+        offsets = new int[groups.length];
+        groupOf = new int[dim * dim];
+        indexOf = new int[dim * dim];
+        weights = new long[groups.length][];
+        Arrays.fill(groupOf, -1);
+        long offset = base;
+        for (int g = 0; g < groups.length; ++g) {
+            offsets[g] = (int) offset;
+            offset += placements(dim * dim, groups[g].length);
+            int k = groups[g].length;
+            weights[g] = new long[k];
+            for (int i = 0; i < k; ++i) {
+                groupOf[groups[g][i]] = g;
+                indexOf[groups[g][i]] = i;
+                weights[g][i] = placements(dim * dim - i - 1, k - i - 1);
+            }
+        }
+    }
+
+    /**
+     * number of placements of k distinct blocks on the cells of a board
+     *
+     * @param cells number of cells
+     * @param k     number of blocks
+     * @return cells! / (cells - k)!
+     */
+    private static long placements(int cells, int k) {
+        long count = 1;
+        for (int i = 0; i < k; ++i) count *= cells - i;
+        return count;
+    }
+
+    /**
+     * check that the groups hold distinct blocks of a dim-by-dim board
+     *
+     * @param dim    board dimension
+     * @param groups blocks of each group
+     * @throws IllegalArgumentException when the groups are not disjoint sets of blocks or a table
+     *                                  would not fit in a mapped buffer
+     */
+    private static void validate(int dim, int[][] groups) {
+        if (dim < 2 || groups == null) throw new IllegalArgumentException();
+        boolean[] seen = new boolean[dim * dim];
+        long total = 0;
+        for (int[] group : groups) {
+            if (group == null || group.length == 0) throw new IllegalArgumentException();
+            for (int block : group) {
+                if (block < 1 || block >= dim * dim || seen[block])
+                    throw new IllegalArgumentException("Groups must be disjoint blocks!");
+                seen[block] = true;
+            }
+            total += placements(dim * dim, group.length);
+        }
+        if (total > Integer.MAX_VALUE - 1024) throw new IllegalArgumentException();
+    }
+
+    /**
+     * rank of the placement of a group, the cell of its i-th block is counted among the cells not
+     * taken by the blocks before it, as a digit of base (cells - i)
+     *
+     * @param cells number of cells
+     * @param cell  cells of the blocks of the group
+     * @return rank in [0, placements(cells, k))
+     */
+    private static long rank(int cells, int[] cell) {
+        long rank = 0;
+        for (int i = 0; i < cell.length; ++i) {
+            int digit = cell[i];
+            for (int j = 0; j < i; ++j) if (cell[j] < cell[i]) digit--;
+            rank = rank * (cells - i) + digit;
+        }
+        return rank;
+    }
+
+    /**
+     * cells of the blocks of a group from the rank of its placement
+     *
+     * @param cells number of cells
+     * @param rank  rank of the placement
+     * @param cell  receives the cells of the blocks of the group
+     */
+    private static void unrank(int cells, long rank, int[] cell) {
+        int k = cell.length;
+        int[] digits = new int[k];
+        for (int i = k - 1; i >= 0; --i) {
+            digits[i] = (int) (rank % (cells - i));
+            rank /= cells - i;
+        }
+        boolean[] taken = new boolean[cells];
+        for (int i = 0; i < k; ++i) {
+            int c = -1;
+            for (int free = digits[i]; free >= 0; free -= taken[c] ? 0 : 1) c++;
+            taken[c] = true;
+            cell[i] = c;
+        }
+    }
+
+    /**
+     * breadth-first search from the goal over the placements of one group and the blank, moves
+     * of the group cost 1 and moves of other blocks cost 0, so every state expands the whole
+     * region the blank reaches without touching the group before moving a block of the group
+     *
+     * @param dim   board dimension
+     * @param group blocks of the group
+     * @return fewest moves of the group for every placement
+     */
+    private static byte[] search(int dim, int[] group) {
+        int cells = dim * dim, k = group.length;
+        long size = placements(cells, k);
+        byte[] table = new byte[(int) size];
+        Arrays.fill(table, (byte) -1);
+        long[] visited = new long[(int) ((size * cells + 63) >>> 6)];
+        int[] cell = new int[k];
+        for (int i = 0; i < k; ++i) cell[i] = group[i] - 1;
+        long[] frontier = { rank(cells, cell) * cells + cells - 1 };
+        int frontierSize = 1;
+        visited[(int) (frontier[0] >>> 6)] |= 1L << frontier[0];
+        int[] owner = new int[cells]; // index in the group of the block on each cell, or -1
+        int[] queue = new int[cells];
+        int[] reached = new int[cells]; // stamp of the last flood reaching each cell
+        int[] rowStep = { -1, 1, 0, 0 }, colStep = { 0, 0, -1, 1 };
+        int stamp = 0;
+        for (int level = 0; frontierSize > 0; ++level) {
+            long[] next = new long[16];
+            int nextSize = 0;
+            for (int f = 0; f < frontierSize; ++f) {
+                long rank = frontier[f] / cells;
+                unrank(cells, rank, cell);
+                if (table[(int) rank] == -1) table[(int) rank] = (byte) level;
+                Arrays.fill(owner, -1);
+                for (int i = 0; i < k; ++i) owner[cell[i]] = i;
+                // flood the region of the blank, free moves of the other blocks
+                int head = 0, tail = 0;
+                queue[tail++] = (int) (frontier[f] % cells);
+                reached[queue[0]] = ++stamp;
+                while (head < tail) {
+                    int blank = queue[head++];
+                    long state = rank * cells + blank;
+                    visited[(int) (state >>> 6)] |= 1L << state;
+                    for (int m = 0; m < 4; ++m) {
+                        int row = blank / dim + rowStep[m], col = blank % dim + colStep[m];
+                        if (row < 0 || row >= dim || col < 0 || col >= dim) continue;
+                        int neighbor = row * dim + col;
+                        if (reached[neighbor] == stamp) continue;
+                        if (owner[neighbor] < 0) {
+                            reached[neighbor] = stamp;
+                            queue[tail++] = neighbor;
+                            continue;
+                        }
+                        // a block of the group slides into the blank at cost 1
+                        int i = owner[neighbor];
+                        cell[i] = blank;
+                        long moved = rank(cells, cell) * cells + neighbor;
+                        cell[i] = neighbor;
+                        if ((visited[(int) (moved >>> 6)] & (1L << moved)) != 0) continue;
+                        visited[(int) (moved >>> 6)] |= 1L << moved;
+                        if (nextSize == next.length) next = Arrays.copyOf(next, 2 * nextSize);
+                        next[nextSize++] = moved;
+                    }
+                }
+            }
+            frontier = next;
+            frontierSize = nextSize;
+        }
+        return table;
+    }
+
+    /**
+     * generate the tables of the groups and write the database file
+     *
+     * @param dim    board dimension
+     * @param groups blocks of each group
+     * @param file   output file, replaced if it exists
+     * @throws IllegalArgumentException when the groups are invalid
+     * @throws UncheckedIOException     when the file cannot be written
+     */
+    public static void generate(int dim, int[][] groups, Path file) {
+        validate(dim, groups);
+        try (OutputStream stream = Files.newOutputStream(file);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream))) {
+            out.writeInt(MAGIC);
+            out.writeInt(dim);
+            out.writeInt(groups.length);
+            for (int[] group : groups) {
+                out.writeInt(group.length);
+                for (int block : group) out.writeInt(block);
+            }
+            for (int[] group : groups) out.write(search(dim, group));
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * memory-map a database file read-only
+     *
+     * @param file the database file
+     * @return the database
+     * @throws IllegalArgumentException when the file is not a valid database
+     * @throws UncheckedIOException     when the file cannot be mapped
+     */
+    public static PatternDatabase load(Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC) throw new IllegalArgumentException("Not a database!");
+            int dim = buffer.getInt();
+            int[][] groups = new int[buffer.getInt()][];
+            long size = 0;
+            for (int g = 0; g < groups.length; ++g) {
+                groups[g] = new int[buffer.getInt()];
+                for (int i = 0; i < groups[g].length; ++i) groups[g][i] = buffer.getInt();
+            }
+            validate(dim, groups);
+            for (int[] group : groups) size += placements(dim * dim, group.length);
+            if (buffer.position() + size != channel.size())
+                throw new IllegalArgumentException("Truncated database!");
+            return new PatternDatabase(dim, groups, buffer, buffer.position());
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * board dimension of the database
+     *
+     * @return board dimension n
+     */
+    public int dimension() {
+        return dim;
+    }
+
+    /**
+     * fewest moves of the blocks of one group
+     *
+     * @param group    index of the group
+     * @param position cell of every block, position[block]
+     * @return the table entry
+     */
+    int distance(int group, int[] position) {
+        int[] blocks = groups[group];
+        int cells = dim * dim;
+        long rank = 0;
+        for (int i = 0; i < blocks.length; ++i) {
+            int digit = position[blocks[i]];
+            for (int j = 0; j < i; ++j) if (position[blocks[j]] < position[blocks[i]]) digit--;
+            rank = rank * (cells - i) + digit;
+        }
+        return tables.get(offsets[group] + (int) rank);
+    }
+
+    /**
+     * sum of the fewest moves over all groups
+     *
+     * @param position cell of every block, position[block]
+     * @return the additive heuristic
+     */
+    int distance(int[] position) {
+        int sum = 0;
+        for (int g = 0; g < groups.length; ++g) sum += distance(g, position);
+        return sum;
+    }
+
+    /**
+     * fewest moves of the blocks of one group, ranked straight from the board. The cells are
+     * scanned in order, so the blocks of the group already seen are those on lower cells, and the
+     * rank digit of a block is its cell less the blocks of the group before it on lower cells.
+     *
+     * @param group index of the group
+     * @param tiles the blocks in row-major order
+     * @param a     a cell read as the cell b, and b as a, to rank the board before a move
+     * @param b     the other cell, equal to a to rank the board as it is
+     * @return the table entry
+     */
+    private int distance(int group, int[] tiles, int a, int b) {
+        long rank = 0;
+        int seen = 0; // indices in the group of the blocks seen so far
+        for (int c = 0; c < tiles.length; ++c) {
+            int block = tiles[c == a ? b : c == b ? a : c];
+            if (groupOf[block] != group) continue;
+            int i = indexOf[block];
+            rank += (c - Integer.bitCount(seen & ((1 << i) - 1))) * weights[group][i];
+            seen |= 1 << i;
+        }
+        return tables.get(offsets[group] + (int) rank);
+    }
+
+    public long initial(int[] tiles, int dim) {
+        if (dim != this.dim)
+            throw new IllegalArgumentException("Pattern database of another dimension!");
+        int sum = 0;
+        for (int g = 0; g < groups.length; ++g) sum += distance(g, tiles, 0, 0);
+        return sum;
+    }
+
+    public long move(long state, int[] tiles, int dim, int from, int to) {
+        int group = groupOf[tiles[to]];
+        if (group < 0) return state;
+        return state - distance(group, tiles, from, to) + distance(group, tiles, 0, 0);
+    }
+
+    /**
+     * generate a database file
+     *
+     * @param args dimension, output file and optional groups of comma separated blocks
+     */
+    public static void main(String[] args) {
+        int dim = Integer.parseInt(args[0]);
+        Path file = Path.of(args[1]);
+        int[][] groups;
+        if (args.length > 2) {
+            groups = new int[args.length - 2][];
+            for (int g = 0; g < groups.length; ++g)
+                groups[g] = Arrays.stream(args[g + 2].split(",")).mapToInt(Integer::parseInt)
+                                  .toArray();
+        }
+        else {
+            groups = new int[][] {
+                    { 1, 2, 3, 4, 5, 6 }, { 7, 8, 9, 10, 11, 12 }, { 13, 14, 15 }
+            };
+        }
+        long start = System.currentTimeMillis();
+        generate(dim, groups, file);
+        System.out.printf("Generated %s in %d ms\n", file, System.currentTimeMillis() - start);
+    }
+}
@@ -4,17 +4,301 @@
  *  Description: solution to the assignment 8puzzle
  **************************************************************************** */
 
-import edu.princeton.cs.algs4.MinPQ;
-import edu.princeton.cs.algs4.Stack;
+import edu.princeton.cs.algs4.In;
 
-import java.util.Comparator;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * functional class to slove the 8 puzzle based on A* algorithm
  */
 public final class Solver {
+    // blank moves: up, down, left, right, the inverse of move m is m ^ 1
+    private static final int[] ROW_STEP = { -1, 1, 0, 0 };
+    private static final int[] COL_STEP = { 0, 0, -1, 1 };
+    // weights of the successive runs of the anytime search, in tenths
+    private static final int[] WEIGHTS = { 30, 20, 15, 12, 10 };
+    private final boolean solvable;
     private final int minMove;
-    private final Stack<Board> stack;
+    private final Board initial;
+    private final long[] path; // blank moves of the solution, 2 bits each, null if none
+    private final Heuristic heuristic;
+    private final Workspace workspace; // buffers of the packed searches
+    private long expanded; // nodes expanded by the search
+    private long generated; // successors generated
+    private long duplicates; // successors dropped by a transposition table
+    private long peak; // largest frontier
+    private final Statistics statistics; // null unless asked for
+    private int lower; // proven lower bound on the fewest moves
+
+    /**
+     * search algorithms available to the solver
+     */
+    public enum Algorithm {
+        /**
+         * A* on a bucket queue, fast on small puzzles but memory bound, the nodes of boards up to
+         * 4-by-4 are packed into an arena of primitive arrays
+         */
+        ASTAR,
+        /**
+         * iterative deepening A* on one mutable board, memory proportional to the solution depth
+         */
+        IDASTAR,
+        /**
+         * hash distributed A*, every board is owned by one thread according to its hash code,
+         * each thread keeps its own queue and transposition table and sends the boards it does
+         * not own to their owners in batches
+         */
+        HDASTAR,
+        /**
+         * anytime weighted A*, runs of decreasing weights down to plain A*, each pruned by the
+         * best solution so far, until the node or time budget is spent
+         */
+        ANYTIME
+    }
+
+    /**
+     * mutable options of a solver, the defaults are a single-threaded A* guided by the Manhattan
+     * distance
+     */
+    public static final class Options {
+        private Algorithm algorithm = Algorithm.ASTAR;
+        private int threads = 1;
+        private Heuristic heuristic;
+        private DistanceTable table;
+        private long nodeBudget = Long.MAX_VALUE;
+        private long timeBudget = Long.MAX_VALUE;
+        private Workspace workspace;
+        private boolean statistics;
+
+        /**
+         * set the search algorithm
+         *
+         * @param anAlgorithm the search algorithm
+         * @return these options
+         */
+        public Options algorithm(Algorithm anAlgorithm) {
+            if (anAlgorithm == null) throw new IllegalArgumentException();
+            algorithm = anAlgorithm;
+            return this;
+        }
+
+        /**
+         * set the number of threads of the hash distributed A*
+         *
+         * @param aThreads number of threads
+         * @return these options
+         */
+        public Options threads(int aThreads) {
+            if (aThreads < 1) throw new IllegalArgumentException();
+            threads = aThreads;
+            return this;
+        }
+
+        /**
+         * guide the searches by an admissible heuristic
+         *
+         * @param aHeuristic the heuristic, null for the Manhattan distance
+         * @return these options
+         */
+        public Options heuristic(Heuristic aHeuristic) {
+            heuristic = aHeuristic;
+            return this;
+        }
+
+        /**
+         * guide the searches by a pattern database, which never falls below the Manhattan
+         * distance since each group needs at least the Manhattan moves of its blocks
+         *
+         * @param aDatabase pattern database, null for the Manhattan distance
+         * @return these options
+         */
+        public Options database(PatternDatabase aDatabase) {
+            return heuristic(aDatabase);
+        }
+
+        /**
+         * solve the boards of the table dimension by walking down the table, without any search
+         *
+         * @param aTable exact distance table, null to always search
+         * @return these options
+         */
+        public Options table(DistanceTable aTable) {
+            table = aTable;
+            return this;
+        }
+
+        /**
+         * stop the anytime search once it expanded the given number of nodes
+         *
+         * @param nodes # of nodes
+         * @return these options
+         */
+        public Options nodeBudget(long nodes) {
+            if (nodes < 1) throw new IllegalArgumentException();
+            nodeBudget = nodes;
+            return this;
+        }
+
+        /**
+         * stop the anytime search once the given time elapsed
+         *
+         * @param millis # of milliseconds
+         * @return these options
+         */
+        public Options timeBudget(long millis) {
+            if (millis < 1) throw new IllegalArgumentException();
+            timeBudget = millis;
+            return this;
+        }
+
+        /**
+         * reuse the buffers of a workspace for the searches of boards up to 4-by-4
+         *
+         * @param aWorkspace workspace of the calling thread, null for buffers of the solver's own
+         * @return these options
+         */
+        public Options workspace(Workspace aWorkspace) {
+            workspace = aWorkspace;
+            return this;
+        }
+
+        /**
+         * collect the statistics of the search
+         *
+         * @param collect whether to collect them
+         * @return these options
+         */
+        public Options statistics(boolean collect) {
+            statistics = collect;
+            return this;
+        }
+    }
+
+    /**
+     * what a search did, the counters and the time of each phase: setup of the heuristic and
+     * the solvability test, the search itself, and packing the solution
+     */
+    public static final class Statistics {
+        private final long expanded;
+        private final long generated;
+        private final long duplicates;
+        private final long peakFrontier;
+        private final long[] nanos; // by phase
+
+        private Statistics(long anExpanded, long aGenerated, long aDuplicates, long aPeak,
+                           long[] aNanos) {
+            expanded = anExpanded;
+            generated = aGenerated;
+            duplicates = aDuplicates;
+            peakFrontier = aPeak;
+            nanos = aNanos;
+        }
+
+        /**
+         * number of nodes expanded, each iteration counting again for IDA*
+         *
+         * @return # of nodes expanded
+         */
+        public long expanded() {
+            return expanded;
+        }
+
+        /**
+         * number of successors generated
+         *
+         * @return # of successors
+         */
+        public long generated() {
+            return generated;
+        }
+
+        /**
+         * number of successors dropped since their board was already reached with as few moves
+         *
+         * @return # of duplicates
+         */
+        public long duplicates() {
+            return duplicates;
+        }
+
+        /**
+         * largest number of queued nodes, the deepest path for IDA* and the sum over the threads
+         * for HDA*
+         *
+         * @return peak size of the frontier
+         */
+        public long peakFrontier() {
+            return peakFrontier;
+        }
+
+        /**
+         * time of setting up the heuristic and testing solvability
+         *
+         * @return # of milliseconds
+         */
+        public double setupMillis() {
+            return nanos[0] / 1e6;
+        }
+
+        /**
+         * time of the search
+         *
+         * @return # of milliseconds
+         */
+        public double searchMillis() {
+            return nanos[1] / 1e6;
+        }
+
+        /**
+         * time of packing the solution
+         *
+         * @return # of milliseconds
+         */
+        public double pathMillis() {
+            return nanos[2] / 1e6;
+        }
+
+        /**
+         * string representation of the statistics
+         *
+         * @return the counters and times
+         */
+        public String toString() {
+            return String.format("expanded = %d, generated = %d, duplicates = %d, "
+                                         + "peak frontier = %d, setup = %.3f ms, "
+                                         + "search = %.3f ms, path = %.3f ms",
+                                 expanded, generated, duplicates, peakFrontier, setupMillis(),
+                                 searchMillis(), pathMillis());
+        }
+    }
+
+    /**
+     * search buffers of one thread, reused by the solvers it runs one after another so a batch of
+     * boards does not allocate an arena, a transposition table and a queue for each board. A
+     * workspace is not thread safe, two solvers must never use one at the same time.
+     */
+    public static final class Workspace {
+        private final Arena arena = new Arena();
+        private final LongIntHashMap index = new LongIntHashMap(1 << 10);
+        private final IntBucketQueue queue = new IntBucketQueue();
+
+        /**
+         * empty the buffers, keeping their capacity
+         */
+        private void clear() {
+            arena.size = 0;
+            index.clear();
+            queue.clear();
+        }
+    }
 
     /**
      * inner class to keep track of the solver path, as well as caching the priority
@@ -23,13 +307,242 @@ public final class Solver {
         private final Board board;
         private final Node predecessor;
         private final int move;
-        private final int priority; // store the manhattan distance to avoid recomputing
+        private final long state; // heuristic state, updated from the predecessor
+        private final int priority; // store the heuristic to avoid recomputing
 
-        public Node(Board aBoard, int aMove, Node aPredecessor) {
+        public Node(Board aBoard, int aMove, Node aPredecessor, long aState) {
             board = aBoard;
             move = aMove;
             predecessor = aPredecessor;
-            priority = board.manhattan() + move;
+            state = aState;
+            priority = Heuristic.estimate(state) + move;
+        }
+    }
+
+    /**
+     * node of the initial board
+     *
+     * @param initial the initial board
+     * @return the node
+     */
+    private Node root(Board initial) {
+        return new Node(initial, 0, null, heuristic.initial(initial.tiles(), initial.dimension()));
+    }
+
+    /**
+     * node of a neighbor of an expanded board, its heuristic state is updated on the blocks of the
+     * expanded board with the move made and undone in place, so no blocks are copied per node
+     *
+     * @param parent   the expanded node
+     * @param neighbor a neighbor of its board
+     * @param tiles    blocks of the expanded board in row-major order, unchanged on return
+     * @return the node
+     */
+    private Node child(Node parent, Board neighbor, int[] tiles) {
+        int from = neighbor.blank(), to = parent.board.blank();
+        tiles[to] = tiles[from];
+        tiles[from] = 0;
+        long state = heuristic.move(parent.state, tiles, neighbor.dimension(), from, to);
+        tiles[from] = tiles[to];
+        tiles[to] = 0;
+        return new Node(neighbor, parent.move + 1, parent, state);
+    }
+
+    /**
+     * transposition table of the A* search, keeping the fewest moves any board was reached with,
+     * a primitive long map of the packed keys for boards up to 4-by-4 and a hash map of boards
+     * beyond that
+     */
+    private static final class Visited {
+        private final LongIntHashMap packed;
+        private final Map<Board, Integer> boards;
+
+        public Visited(Board initial) {
+            if (initial.dimension() <= 4) {
+                packed = new LongIntHashMap(1 << 10);
+                boards = null;
+            }
+            else {
+                packed = null;
+                boards = new HashMap<Board, Integer>();
+            }
+        }
+
+        /**
+         * fewest moves the board was reached with
+         *
+         * @param board the board
+         * @return # of moves, Integer.MAX_VALUE for an unseen board
+         */
+        public int moves(Board board) {
+            if (packed != null) return packed.get(board.key(), Integer.MAX_VALUE);
+            Integer moves = boards.get(board);
+            return moves == null ? Integer.MAX_VALUE : moves;
+        }
+
+        /**
+         * record the board reached with the given moves if that improves on the table
+         *
+         * @param board the board
+         * @param moves # of moves
+         * @return whether the board was recorded
+         */
+        public boolean improve(Board board, int moves) {
+            if (moves(board) <= moves) return false;
+            if (packed != null) packed.put(board.key(), moves);
+            else boards.put(board, moves);
+            return true;
+        }
+    }
+
+    /**
+     * search nodes of the A* on boards up to 4-by-4, stored as parallel primitive arrays instead
+     * of objects, a node is an index into the arrays and refers to its parent by index too
+     */
+    private static final class Arena {
+        private long[] keys = new long[1 << 10]; // packed boards
+        // g, weighted runs reach well past the 80 moves of the longest optimal 4-by-4 solution
+        private short[] moves = new short[1 << 10];
+        private byte[] estimates = new byte[1 << 10]; // h, admissible so at most 80
+        private byte[] last = new byte[1 << 10]; // blank move from the parent
+        private int[] parents = new int[1 << 10]; // -1 for the root
+        private int size;
+
+        /**
+         * append a node
+         *
+         * @return its index
+         */
+        public int add(long key, int g, int h, int parent, int move) {
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, 2 * size);
+                moves = Arrays.copyOf(moves, 2 * size);
+                estimates = Arrays.copyOf(estimates, 2 * size);
+                last = Arrays.copyOf(last, 2 * size);
+                parents = Arrays.copyOf(parents, 2 * size);
+            }
+            keys[size] = key;
+            moves[size] = (short) g;
+            estimates[size] = (byte) h;
+            last[size] = (byte) move;
+            parents[size] = parent;
+            return size++;
+        }
+
+        /**
+         * blank moves from the root to a node
+         */
+        public int[] path(int node) {
+            int[] path = new int[moves[node]];
+            for (int i = node; parents[i] >= 0; i = parents[i]) path[moves[i] - 1] = last[i];
+            return path;
+        }
+    }
+
+    /**
+     * a mutable board for the depth-first searches of IDA*, moving the blank updates the
+     * Manhattan distance in O(1), which tells the goal, and the heuristic state, and records the
+     * move, so no search node is ever allocated
+     */
+    private static final class MutableBoard {
+        private static final int FOUND = -1;
+        private final int dim;
+        private final int[] tiles;
+        private int blank;
+        private int manhattan;
+        private final Heuristic heuristic;
+        private long state;
+        private int[] path = new int[64];
+        private int depth;
+        private long expanded;
+        private long generated;
+        private int deepest;
+
+        public MutableBoard(Board board, Heuristic aHeuristic) {
+            dim = board.dimension();
+            tiles = board.tiles();
+            blank = board.blank();
+            manhattan = board.manhattan();
+            heuristic = aHeuristic;
+            state = heuristic.initial(tiles, dim);
+        }
+
+        /**
+         * admissible estimate of the moves left
+         */
+        private int heuristic() {
+            return Heuristic.estimate(state);
+        }
+
+        /**
+         * slide the blank one step, leaving the heuristic state to the caller
+         */
+        private void slide(int m) {
+            int target = blank + ROW_STEP[m] * dim + COL_STEP[m];
+            int tile = tiles[target];
+            manhattan += Manhattan.distance(tile, blank, dim)
+                    - Manhattan.distance(tile, target, dim);
+            tiles[blank] = tile;
+            tiles[target] = 0;
+            blank = target;
+        }
+
+        /**
+         * slide the blank one step, the caller checks the move stays on the board
+         */
+        private void move(int m) {
+            int from = blank;
+            slide(m);
+            state = heuristic.move(state, tiles, dim, blank, from);
+        }
+
+        /**
+         * whether the blank can slide one step in direction m
+         */
+        private boolean canMove(int m) {
+            int row = blank / dim + ROW_STEP[m], col = blank % dim + COL_STEP[m];
+            return row >= 0 && row < dim && col >= 0 && col < dim;
+        }
+
+        /**
+         * depth-first search bounded by the threshold on g + h
+         *
+         * @param g         number of moves made so far
+         * @param threshold bound of this iteration
+         * @param last      last move, -1 at the root
+         * @return FOUND, or the smallest g + h exceeding the threshold
+         */
+        public int search(int g, int threshold, int last) {
+            int f = g + heuristic();
+            if (f > threshold) return f;
+            if (manhattan == 0) {
+                depth = g;
+                return FOUND;
+            }
+            expanded++;
+            deepest = Math.max(deepest, g + 1);
+            int min = Integer.MAX_VALUE;
+            long saved = state;
+            for (int m = 0; m < 4; ++m) {
+                if (m == (last ^ 1) || !canMove(m)) continue;
+                generated++;
+                move(m);
+                if (g == path.length) path = Arrays.copyOf(path, 2 * g);
+                path[g] = m;
+                int t = search(g + 1, threshold, m);
+                slide(m ^ 1);
+                state = saved;
+                if (t == FOUND) return FOUND;
+                min = Math.min(min, t);
+            }
+            return min;
+        }
+
+        /**
+         * blank moves of the path found by the last successful search
+         */
+        public int[] path() {
+            return Arrays.copyOf(path, depth);
         }
     }
 
@@ -39,41 +552,612 @@ public final class Solver {
      * @param initial the initial board
      */
     public Solver(Board initial) {
+        this(initial, new Options());
+    }
+
+    /**
+     * find a solution of the initial board with the given search algorithm
+     *
+     * @param initial   the initial board
+     * @param algorithm the search algorithm
+     */
+    public Solver(Board initial, Algorithm algorithm) {
+        this(initial, new Options().algorithm(algorithm));
+    }
+
+    /**
+     * find a solution of the initial board with the given search algorithm, guided by a pattern
+     * database
+     *
+     * @param initial   the initial board
+     * @param algorithm the search algorithm
+     * @param aDatabase pattern database of the board dimension, null for Manhattan alone
+     */
+    public Solver(Board initial, Algorithm algorithm, PatternDatabase aDatabase) {
+        this(initial, new Options().algorithm(algorithm).database(aDatabase));
+    }
+
+    /**
+     * find a solution of the initial board by walking down an exact distance table, without any
+     * search, boards of another dimension than the table are solved by A*
+     *
+     * @param initial the initial board
+     * @param table   exact distance table
+     */
+    public Solver(Board initial, DistanceTable table) {
+        this(initial, new Options().table(table));
+    }
+
+    /**
+     * find a solution of the initial board as the options say
+     *
+     * @param initial the initial board
+     * @param options the options of the solver
+     */
+    public Solver(Board initial, Options options) {
         if (initial == null) throw new IllegalArgumentException("Initial Board can not be null!");
-        Node now1 = null, now2 = null;
-        Comparator<Node> comparator = (n1, n2) -> (n1.priority - n2.priority);
-        // build two priority to solve the initial board and one of its random twin
-        MinPQ<Node> pq1 = new MinPQ<Node>(comparator);
-        pq1.insert(new Node(initial, 0, null));
-        MinPQ<Node> pq2 = new MinPQ<Node>(comparator);
-        pq2.insert(new Node(initial.twin(), 0, null));
+        if (options == null) throw new IllegalArgumentException("Options can not be null!");
+        long start = options.statistics ? System.nanoTime() : 0;
+        heuristic = options.heuristic == null ? new Manhattan() : options.heuristic;
+        workspace = options.workspace == null ? new Workspace() : options.workspace;
+        // fails early on a heuristic of another dimension
+        heuristic.initial(initial.tiles(), initial.dimension());
+        this.initial = initial;
+        // decide solvability up front by parity, only solvable boards are searched
+        solvable = initial.isSolvable();
+        long setup = options.statistics ? System.nanoTime() : 0;
+        int[] moves;
+        // everything but the anytime search finds an optimal solution, the table walk included
+        boolean walked = options.table != null && options.table.dimension() == initial.dimension();
+        if (!solvable) moves = null;
+        else if (walked) moves = walk(initial, options.table);
+        else if (options.algorithm == Algorithm.IDASTAR) moves = idaStar(initial);
+        else if (options.algorithm == Algorithm.HDASTAR) moves = hdaStar(initial, options.threads);
+        else if (options.algorithm == Algorithm.ANYTIME)
+            moves = anytime(initial, options.nodeBudget, options.timeBudget);
+        else if (initial.dimension() <= 4) moves = aStar(initial.key(), initial.dimension());
+        else moves = aStar(initial);
+        long search = options.statistics ? System.nanoTime() : 0;
+        minMove = moves == null ? -1 : moves.length;
+        path = moves == null ? null : pack(moves);
+        if (walked || options.algorithm != Algorithm.ANYTIME) lower = minMove;
+        if (options.statistics) {
+            long[] nanos = { setup - start, search - setup, System.nanoTime() - search };
+            statistics = new Statistics(expanded, generated, duplicates, peak, nanos);
+        }
+        else statistics = null;
+    }
+
+    /**
+     * pack blank moves 2 bits each, 32 to a long
+     */
+    private static long[] pack(int[] moves) {
+        long[] packed = new long[(moves.length + 31) / 32];
+        for (int i = 0; i < moves.length; ++i) packed[i >>> 5] |= (long) moves[i] << (2 * (i & 31));
+        return packed;
+    }
 
-        while ((now1 == null || !now1.board.isGoal())
-                && (now2 == null || !now2.board.isGoal())) {
-            now1 = pq1.delMin();
-            now2 = pq2.delMin();
-            // enqueue all neighbor boards unless it's identical to the predecessor
-            for (Board neighbor : now1.board.neighbors())
-                if (now1.predecessor == null || !neighbor.equals(now1.predecessor.board))
-                    pq1.insert(new Node(neighbor, now1.move + 1, now1));
-            for (Board neighbor : now2.board.neighbors())
-                if (now2.predecessor == null || !neighbor.equals(now2.predecessor.board))
-                    pq2.insert(new Node(neighbor, now2.move + 1, now2));
+    /**
+     * blank moves along a sequence of boards, each a neighbor of the one before
+     */
+    private static int[] moves(Board[] sequence) {
+        int[] moves = new int[sequence.length - 1];
+        int dim = sequence[0].dimension();
+        for (int i = 0, from = sequence[0].blank(); i < moves.length; ++i) {
+            int to = sequence[i + 1].blank(), m = 0;
+            while (to - from != ROW_STEP[m] * dim + COL_STEP[m]) m++;
+            moves[i] = m;
+            from = to;
         }
+        return moves;
+    }
 
-        // retrieve the path
-        if (!now1.board.isGoal()) {
-            minMove = -1;
-            stack = null;
+    /**
+     * blank moves from the root of the search to a node
+     */
+    private static int[] moves(Node node) {
+        Board[] sequence = new Board[node.move + 1];
+        for (Node now = node; now != null; now = now.predecessor) sequence[now.move] = now.board;
+        return moves(sequence);
+    }
+
+    /**
+     * follow the neighbors one move closer to the goal
+     *
+     * @param initial a solvable initial board
+     * @param table   exact distance table of its dimension
+     * @return blank moves of the solution
+     */
+    private int[] walk(Board initial, DistanceTable table) {
+        int moves = table.distance(initial);
+        Board[] sequence = new Board[moves + 1];
+        sequence[0] = initial;
+        for (int i = 1; i <= moves; ++i)
+            for (Board neighbor : sequence[i - 1].neighbors())
+                if (table.distance(neighbor) == moves - i) sequence[i] = neighbor;
+        return moves(sequence);
+    }
+
+    /**
+     * A* on the initial board, one object per node, for boards too large to be packed
+     *
+     * @param initial a solvable initial board
+     * @return blank moves of the solution
+     */
+    private int[] aStar(Board initial) {
+        // priorities are small integers, ties go to the deepest node, closest to the goal
+        BucketQueue<Node> pq = new BucketQueue<Node>();
+        pq.insert(root(initial), 0, 0);
+        Visited visited = new Visited(initial);
+        visited.improve(initial, 0);
+        int[] tiles = new int[initial.dimension() * initial.dimension()];
+        Node now = next(pq, visited);
+        while (!now.board.isGoal()) {
+            expanded++;
+            now.board.tiles(tiles);
+            // enqueue the neighbor boards not yet reached with as few moves
+            for (Board neighbor : now.board.neighbors()) {
+                generated++;
+                if (!visited.improve(neighbor, now.move + 1)) {
+                    duplicates++;
+                    continue;
+                }
+                Node node = child(now, neighbor, tiles);
+                pq.insert(node, node.priority, node.move);
+            }
+            peak = Math.max(peak, pq.size());
+            now = next(pq, visited);
         }
-        else {
-            minMove = now1.move;
-            stack = new Stack<Board>();
-            while (now1 != null) {
-                stack.push(now1.board);
-                now1 = now1.predecessor;
+        return moves(now);
+    }
+
+    /**
+     * A* on a packed board up to 4-by-4, the nodes live in an arena and the transposition table
+     * maps each key to the node reaching it with the fewest moves, a node no longer mapped has
+     * been superseded and is skipped when dequeued. The arena keeps the estimate of a node only,
+     * its heuristic state is rebuilt when it is expanded and updated for each child.
+     *
+     * @param initial key of a solvable initial board
+     * @param dim     dimension of the board
+     * @return blank moves of the solution
+     */
+    private int[] aStar(long initial, int dim) {
+        return aStar(initial, dim, 10, Integer.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * a run of the anytime search on a packed board, see weighted, with the nodes in an arena as
+     * in the plain A*, which is the run of weight 1 without limit or budget
+     *
+     * @param initial  key of a solvable initial board
+     * @param dim      dimension of the board
+     * @param weight   weight of the heuristic in tenths, at least 10
+     * @param limit    moves of the best solution so far
+     * @param nodes    node budget
+     * @param deadline time budget, by System.nanoTime()
+     * @return blank moves of a better solution, null if the run found none
+     */
+    private int[] aStar(long initial, int dim, int weight, int limit, long nodes, long deadline) {
+        long goal = 0;
+        for (int i = 0; i < dim * dim - 1; ++i) goal |= (long) (i + 1) << (4 * i);
+        int[] tiles = new int[dim * dim];
+        workspace.clear();
+        Arena arena = workspace.arena;
+        LongIntHashMap index = workspace.index;
+        IntBucketQueue pq = workspace.queue;
+        int[] queued = new int[16]; // number of queued nodes by g + h
+        int root = arena.add(initial, 0, Heuristic.estimate(state(initial, tiles)), -1, 0);
+        index.put(initial, root);
+        pq.insert(root, weight * arena.estimates[root], 0);
+        queued = count(queued, arena.estimates[root], 1);
+        while (!pq.isEmpty()) {
+            if (spent(nodes, deadline)) {
+                bound(queued, limit);
+                return null;
+            }
+            int now = pq.delMin();
+            queued = count(queued, arena.moves[now] + arena.estimates[now], -1);
+            long key = arena.keys[now];
+            if (index.get(key, -1) != now) continue;
+            if (key == goal) {
+                lower = Math.max(lower, (arena.moves[now] * 10 + weight - 1) / weight);
+                return arena.path(now);
             }
+            expanded++;
+            int g = arena.moves[now] + 1;
+            long state = state(key, tiles);
+            int blank = 0;
+            while (tiles[blank] != 0) blank++;
+            for (int m = 0; m < 4; ++m) {
+                int row = blank / dim + ROW_STEP[m], col = blank % dim + COL_STEP[m];
+                if (row < 0 || row >= dim || col < 0 || col >= dim) continue;
+                generated++;
+                int target = row * dim + col;
+                int tile = tiles[target];
+                long next = key & ~(0xFL << (4 * target)) | (long) tile << (4 * blank);
+                int existing = index.get(next, -1);
+                if (existing >= 0 && arena.moves[existing] <= g) {
+                    duplicates++;
+                    continue;
+                }
+                tiles[blank] = tile;
+                tiles[target] = 0;
+                int estimate = Heuristic.estimate(heuristic.move(state, tiles, dim, target, blank));
+                tiles[target] = tile;
+                tiles[blank] = 0;
+                // no path that long is ever needed, the optimum of any board is at most 80
+                if (g + estimate >= limit || g > Short.MAX_VALUE) continue;
+                int node = arena.add(next, g, estimate, now, m);
+                index.put(next, node);
+                pq.insert(node, 10 * g + weight * estimate, g);
+                queued = count(queued, g + estimate, 1);
+            }
+            peak = Math.max(peak, pq.size());
         }
+        // nothing shorter than the limit is left
+        lower = Math.max(lower, limit);
+        return null;
+    }
+
+    /**
+     * heuristic state of a packed board
+     *
+     * @param key   the packed board
+     * @param tiles buffer for the unpacked blocks
+     * @return the state
+     */
+    private long state(long key, int[] tiles) {
+        for (int i = 0; i < tiles.length; ++i) tiles[i] = (int) (key >>> (4 * i) & 0xF);
+        return heuristic.initial(tiles, (int) Math.sqrt(tiles.length));
+    }
+
+    /**
+     * anytime weighted A* on the initial board, each run lowers the weight and prunes the nodes
+     * that cannot beat the best solution so far, and raises the lower bound
+     *
+     * @param initial a solvable initial board
+     * @param nodes   node budget
+     * @param millis  time budget
+     * @return blank moves of the best solution, null if none was found within the budget
+     */
+    private int[] anytime(Board initial, long nodes, long millis) {
+        long deadline = millis == Long.MAX_VALUE ? Long.MAX_VALUE
+                                                 : System.nanoTime() + millis * 1000000;
+        int dim = initial.dimension();
+        int[] best = null;
+        for (int weight : WEIGHTS) {
+            int limit = best == null ? Integer.MAX_VALUE : best.length;
+            int[] found = dim <= 4 ? aStar(initial.key(), dim, weight, limit, nodes, deadline)
+                                   : weighted(initial, weight, limit, nodes, deadline);
+            if (found != null) best = found;
+            if (best != null && lower == best.length) break; // proven optimal
+            if (spent(nodes, deadline)) break;
+        }
+        return best;
+    }
+
+    /**
+     * one run of the anytime search, A* on g + weight * h that drops every node whose g + h
+     * reaches the limit. The lower bound is raised by the smallest g + h left in the queue, and
+     * by the solution found, which is within the weight of the optimum.
+     *
+     * @param initial  a solvable initial board
+     * @param weight   weight of the heuristic in tenths, at least 10
+     * @param limit    moves of the best solution so far
+     * @param nodes    node budget
+     * @param deadline time budget, by System.nanoTime()
+     * @return blank moves of a better solution, null if the run found none
+     */
+    private int[] weighted(Board initial, int weight, int limit, long nodes, long deadline) {
+        BucketQueue<Node> pq = new BucketQueue<Node>();
+        int[] queued = new int[16]; // number of queued nodes by g + h
+        Node root = root(initial);
+        pq.insert(root, weight * root.priority, 0);
+        queued = count(queued, root.priority, 1);
+        Visited visited = new Visited(initial);
+        visited.improve(initial, 0);
+        int[] tiles = new int[initial.dimension() * initial.dimension()];
+        while (!pq.isEmpty()) {
+            if (spent(nodes, deadline)) {
+                bound(queued, limit);
+                return null;
+            }
+            Node now = pq.delMin();
+            queued = count(queued, now.priority, -1);
+            if (now.move > visited.moves(now.board)) continue;
+            if (now.board.isGoal()) {
+                lower = Math.max(lower, (now.move * 10 + weight - 1) / weight);
+                return moves(now);
+            }
+            expanded++;
+            now.board.tiles(tiles);
+            for (Board neighbor : now.board.neighbors()) {
+                generated++;
+                Node node = child(now, neighbor, tiles);
+                if (node.priority >= limit) continue;
+                if (!visited.improve(neighbor, node.move)) {
+                    duplicates++;
+                    continue;
+                }
+                pq.insert(node, 10 * node.move + weight * (node.priority - node.move), node.move);
+                queued = count(queued, node.priority, 1);
+            }
+            peak = Math.max(peak, pq.size());
+        }
+        // nothing shorter than the limit is left
+        lower = Math.max(lower, limit);
+        return null;
+    }
+
+    /**
+     * whether the budget of the anytime search is spent, the clock is read every 64 expansions
+     */
+    private boolean spent(long nodes, long deadline) {
+        return expanded >= nodes || (expanded & 0x3F) == 0 && System.nanoTime() >= deadline;
+    }
+
+    /**
+     * raise the lower bound when a run stops, every shortest solution goes through a queued node
+     * reached by a shortest path, unless it was dropped by the limit
+     *
+     * @param queued number of queued nodes by g + h
+     * @param limit  moves of the best solution so far
+     */
+    private void bound(int[] queued, int limit) {
+        int f = 0;
+        while (f < queued.length && queued[f] == 0) f++;
+        lower = Math.max(lower, Math.min(f, limit));
+    }
+
+    /**
+     * add to the count of queued nodes of a g + h, growing the counts as needed
+     */
+    private static int[] count(int[] queued, int f, int delta) {
+        if (f >= queued.length) queued = Arrays.copyOf(queued, Math.max(2 * queued.length, f + 1));
+        queued[f] += delta;
+        return queued;
+    }
+
+    /**
+     * dequeue the next node, skipping the nodes superseded by a shorter path to their board
+     *
+     * @param pq      the priority queue
+     * @param visited transposition table of the search
+     * @return the node of minimal priority
+     */
+    private Node next(BucketQueue<Node> pq, Visited visited) {
+        Node node = pq.delMin();
+        while (node.move > visited.moves(node.board)) node = pq.delMin();
+        return node;
+    }
+
+    /**
+     * IDA* on the initial board, each iteration raises the threshold to the smallest f exceeding
+     * it
+     *
+     * @param initial a solvable initial board
+     * @return blank moves of the solution
+     */
+    private int[] idaStar(Board initial) {
+        MutableBoard board = new MutableBoard(initial, heuristic);
+        int threshold = board.heuristic();
+        while (threshold != MutableBoard.FOUND) threshold = board.search(0, threshold, -1);
+        expanded = board.expanded;
+        generated = board.generated;
+        peak = board.deepest;
+        return board.path();
+    }
+
+    /**
+     * one thread of the hash distributed A*. A node is counted in pending from the moment it is
+     * generated until it is expanded or dropped, and children are counted before their parent is
+     * released, so pending reaches 0 only when no node is left in any queue, outbox or inbox. The
+     * search stops there, and the incumbent is then optimal since every node with a lower f has
+     * been expanded. A thread failing records its error and stops the others, since its nodes are
+     * never released and pending would not reach 0 any more. An idle thread parks until a message
+     * or the end of the search wakes it.
+     */
+    private final class Worker implements Runnable {
+        private static final int BATCH = 64; // nodes per message
+        private static final int FLUSH = 256; // expansions between two flushes of every outbox
+        private static final long IDLE = 1_000_000; // longest park of an idle thread, in ns
+        private final int id;
+        private final Worker[] workers;
+        private final AtomicLong pending;
+        private final AtomicReference<Node> incumbent;
+        private final AtomicReference<Throwable> failure; // first error of any thread, stops all
+        private final BucketQueue<Node> open = new BucketQueue<Node>();
+        private final ConcurrentLinkedQueue<Node[]> inbox = new ConcurrentLinkedQueue<Node[]>();
+        private final Node[][] outbox;
+        private final int[] outboxSize;
+        private final Visited visited;
+        private final int[] tiles; // blocks of the expanded board
+        private volatile Thread thread; // thread running the worker, null until it starts
+        private long expansions;
+        private long generated;
+        private long duplicates;
+        private long peak;
+
+        public Worker(int anId, Worker[] aWorkers, AtomicLong aPending,
+                      AtomicReference<Node> anIncumbent, AtomicReference<Throwable> aFailure,
+                      Board initial) {
+            id = anId;
+            workers = aWorkers;
+            pending = aPending;
+            incumbent = anIncumbent;
+            failure = aFailure;
+            outbox = new Node[workers.length][BATCH];
+            outboxSize = new int[workers.length];
+            visited = new Visited(initial);
+            tiles = new int[initial.dimension() * initial.dimension()];
+        }
+
+        /**
+         * thread owning a board
+         */
+        private int owner(Board board) {
+            return Math.floorMod(board.hashCode(), workers.length);
+        }
+
+        /**
+         * queue a node owned by this thread unless its board was reached with as few moves
+         *
+         * @return whether the node was queued
+         */
+        private boolean offer(Node node) {
+            if (!visited.improve(node.board, node.move)) {
+                duplicates++;
+                return false;
+            }
+            open.insert(node, node.priority, node.move);
+            peak = Math.max(peak, open.size());
+            return true;
+        }
+
+        /**
+         * send the nodes buffered for a thread as one message
+         */
+        private void flush(int to) {
+            if (outboxSize[to] == 0) return;
+            workers[to].inbox.add(Arrays.copyOf(outbox[to], outboxSize[to]));
+            outboxSize[to] = 0;
+            workers[to].wake();
+        }
+
+        /**
+         * unpark the thread of this worker if it is idle
+         */
+        private void wake() {
+            Thread t = thread;
+            if (t != null) LockSupport.unpark(t);
+        }
+
+        /**
+         * length of the best solution found so far
+         */
+        private int bound() {
+            Node best = incumbent.get();
+            return best == null ? Integer.MAX_VALUE : best.move;
+        }
+
+        public void run() {
+            thread = Thread.currentThread();
+            try {
+                search();
+            }
+            catch (Throwable e) {
+                failure.compareAndSet(null, e);
+            }
+            // the end of the search, or a failure, is news to every idle thread
+            for (Worker worker : workers) worker.wake();
+        }
+
+        /**
+         * expand nodes until pending reaches 0 or a thread fails
+         */
+        private void search() {
+            while (failure.get() == null) {
+                for (Node[] message = inbox.poll(); message != null; message = inbox.poll()) {
+                    int dropped = 0;
+                    for (Node node : message) if (!offer(node)) dropped++;
+                    if (dropped > 0) pending.addAndGet(-dropped);
+                }
+                if (open.isEmpty()) {
+                    for (int to = 0; to < workers.length; ++to) flush(to);
+                    if (pending.get() == 0 || failure.get() != null) return;
+                    if (inbox.isEmpty()) LockSupport.parkNanos(this, IDLE);
+                    continue;
+                }
+                Node now = open.delMin();
+                // drop stale nodes and nodes that cannot beat the incumbent
+                if (now.move > visited.moves(now.board) || now.priority >= bound()) {
+                    pending.decrementAndGet();
+                    continue;
+                }
+                if (now.board.isGoal()) {
+                    Node best = incumbent.get();
+                    while ((best == null || now.move < best.move)
+                            && !incumbent.compareAndSet(best, now)) best = incumbent.get();
+                    pending.decrementAndGet();
+                    continue;
+                }
+                // children are counted before any of them is sent and before the parent is released
+                int children = 0;
+                now.board.tiles(tiles);
+                for (Board neighbor : now.board.neighbors()) {
+                    generated++;
+                    Node node = child(now, neighbor, tiles);
+                    int to = owner(neighbor);
+                    if (to == id) {
+                        if (offer(node)) children++;
+                        continue;
+                    }
+                    if (outboxSize[to] == BATCH) {
+                        pending.addAndGet(children);
+                        children = 0;
+                        flush(to);
+                    }
+                    outbox[to][outboxSize[to]++] = node;
+                    children++;
+                }
+                pending.addAndGet(children - 1);
+                if (++expansions % FLUSH == 0)
+                    for (int to = 0; to < workers.length; ++to) flush(to);
+            }
+        }
+    }
+
+    /**
+     * hash distributed A* on the initial board
+     *
+     * @param initial a solvable initial board
+     * @param threads number of threads
+     * @return blank moves of the solution
+     * @throws IllegalStateException when interrupted, the threads are stopped first, or when a
+     *                               thread failed with a checked exception, errors and unchecked
+     *                               exceptions of a thread are rethrown as they are
+     */
+    private int[] hdaStar(Board initial, int threads) {
+        Worker[] workers = new Worker[threads];
+        AtomicLong pending = new AtomicLong(1);
+        AtomicReference<Node> incumbent = new AtomicReference<Node>();
+        AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        for (int i = 0; i < threads; ++i)
+            workers[i] = new Worker(i, workers, pending, incumbent, failure, initial);
+        workers[workers[0].owner(initial)].offer(root(initial));
+        Thread[] pool = new Thread[threads];
+        for (int i = 0; i < threads; ++i) {
+            pool[i] = new Thread(workers[i], "solver-" + i);
+            pool[i].start();
+        }
+        boolean interrupted = false;
+        for (Thread thread : pool) {
+            while (thread.isAlive()) {
+                try {
+                    thread.join();
+                }
+                catch (InterruptedException e) {
+                    // stop every worker as a failure would, and wait for them to exit
+                    interrupted = true;
+                    failure.compareAndSet(null, e);
+                    for (Worker worker : workers) worker.wake();
+                }
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+        Throwable e = failure.get();
+        if (e instanceof InterruptedException)
+            throw new IllegalStateException("Interrupted while solving!", e);
+        if (e instanceof Error) throw (Error) e;
+        if (e instanceof RuntimeException) throw (RuntimeException) e;
+        if (e != null) throw new IllegalStateException("Failed to solve the board!", e);
+        for (Worker worker : workers) {
+            expanded += worker.expansions;
+            generated += worker.generated;
+            duplicates += worker.duplicates;
+            peak += worker.peak;
+        }
+        return moves(incumbent.get());
     }
 
     /**
@@ -82,11 +1166,12 @@ public final class Solver {
      * @return whether it's solvable
      */
     public boolean isSolvable() {
-        return minMove != -1;
+        return solvable;
     }
 
     /**
-     * min number of moves to solve the initial board, -1 for unsolvable
+     * min number of moves to solve the initial board, the moves of the best solution found by the
+     * anytime search, -1 for unsolvable or if the anytime search found none within its budget
      *
      * @return min number of moves
      */
@@ -95,20 +1180,122 @@ public final class Solver {
     }
 
     /**
-     * sequence of boards in a shortest solution, null if unsolvable
+     * proven bound on the ratio of moves() to the fewest moves, 1 for a shortest solution
+     *
+     * @return the suboptimality bound, infinity when there is no solution
+     */
+    public double bound() {
+        if (minMove == -1) return Double.POSITIVE_INFINITY;
+        return minMove == lower ? 1 : (double) minMove / lower;
+    }
+
+    /**
+     * number of nodes the search expanded, each iteration counting again for IDA*, 0 when the
+     * solution was read off a distance table
+     *
+     * @return # of nodes expanded
+     */
+    public long expanded() {
+        return expanded;
+    }
+
+    /**
+     * what the search did, collected only when the options asked for it
+     *
+     * @return the statistics, null if not collected
+     */
+    public Statistics statistics() {
+        return statistics;
+    }
+
+    /**
+     * sequence of boards in a shortest solution, the best one found by the anytime search, null
+     * if unsolvable or if the anytime search found none within its budget
      *
      * @return steps
      */
     public Iterable<Board> solution() {
-        return stack;
+        if (path == null) return null;
+        return new Iterable<Board>() {
+            public Iterator<Board> iterator() {
+                return new Replay();
+            }
+        };
+    }
+
+    /**
+     * iterator replaying the blank moves of the solution from the initial board, each board is
+     * rebuilt only when it is reached
+     */
+    private final class Replay implements Iterator<Board> {
+        private final int dim = initial.dimension();
+        private final int[] tiles = initial.tiles();
+        private int blank = initial.blank();
+        private int step = -1;
+
+        public boolean hasNext() {
+            return step < minMove;
+        }
+
+        public Board next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            if (++step == 0) return initial;
+            int m = (int) (path[(step - 1) >>> 5] >>> (2 * ((step - 1) & 31))) & 3;
+            int target = blank + ROW_STEP[m] * dim + COL_STEP[m];
+            tiles[blank] = tiles[target];
+            tiles[target] = 0;
+            blank = target;
+            int[][] blocks = new int[dim][dim];
+            for (int i = 0; i < tiles.length; ++i) blocks[i / dim][i % dim] = tiles[i];
+            return new Board(blocks);
+        }
     }
 
     /**
-     * main method to do unit test
+     * compare the nodes IDA* expands under each heuristic on puzzle files, each file holds the
+     * dimension followed by the blocks as in the assignment
      *
-     * @param args input file name
+     * @param args input file names
      */
     public static void main(String[] args) {
-        // do unit test here
+        String[] names = { "manhattan", "linear conflict", "walking distance" };
+        long[] totals = new long[names.length], baselines = new long[names.length];
+        Map<Integer, WalkingDistance> walking = new HashMap<Integer, WalkingDistance>();
+        for (String file : args) {
+            In in = new In(file);
+            int n = in.readInt();
+            int[][] blocks = new int[n][n];
+            for (int i = 0; i < n; ++i) for (int j = 0; j < n; ++j) blocks[i][j] = in.readInt();
+            Board initial = new Board(blocks);
+            if (!initial.isSolvable()) {
+                System.out.println(file + ": unsolvable");
+                continue;
+            }
+            Heuristic[] heuristics = {
+                    new Manhattan(), new LinearConflict(),
+                    n <= 4 ? walking.computeIfAbsent(n, WalkingDistance::new) : null
+            };
+            StringBuilder line = new StringBuilder(file + ":");
+            long manhattan = 0;
+            for (int h = 0; h < heuristics.length; ++h) {
+                if (heuristics[h] == null) continue;
+                Options options = new Options().algorithm(Algorithm.IDASTAR);
+                Solver solver = new Solver(initial, options.heuristic(heuristics[h]));
+                if (h == 0) {
+                    line.append(" moves = ").append(solver.moves());
+                    manhattan = solver.expanded();
+                }
+                line.append(", ").append(names[h]).append(" = ").append(solver.expanded());
+                totals[h] += solver.expanded();
+                baselines[h] += manhattan;
+            }
+            System.out.println(line);
+        }
+        for (int h = 1; h < names.length; ++h) {
+            if (totals[h] == 0) continue;
+            System.out.println(String.format("%-16s expands %d nodes, %.1f times fewer than %s",
+                                             names[h], totals[h],
+                                             (double) baselines[h] / totals[h], names[0]));
+        }
     }
 }
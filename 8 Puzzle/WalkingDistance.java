@@ -0,0 +1,141 @@
+/* *****************************************************************************
+ *  Name: Chen Wahng
+ *  Date: Jult 18, 2019
+ *  Description: walking distance heuristic of the sliding puzzle
+ **************************************************************************** */
+
+import java.util.Arrays;
+
+/**
+ * walking distance. Forgetting the columns, a board becomes a matrix counting the blocks of each
+ * row by their goal row, and a vertical move takes one block from a row next to the blank row
+ * into it. The fewest such moves to the goal matrix, plus the same for columns and horizontal
+ * moves, never overestimate. The matrices are few, 24964 for the 4-by-4 puzzle, so a breadth
+ * first search from the goal tabulates the distance of each and its successor for every move.
+ * The state packs the estimate, the id of the row matrix in bits [16, 40) and the id of the
+ * column matrix above, and a move is one table lookup.
+ */
+public final class WalkingDistance implements Heuristic {
+    private final int dim;
+    private final LongIntHashMap ids = new LongIntHashMap(1 << 10); // matrix code to id
+    private byte[] distances = new byte[1 << 10]; // by id
+    private int[] successors; // [id][blank move up or down][goal line of the block], -1 if none
+    private int count;
+
+    /**
+     * tabulate the walking distance of a dimension
+     *
+     * @param dim dimension of the board
+     * @throws IllegalArgumentException when dim is not in range of [2, 4]
+     */
+    public WalkingDistance(int dim) {
+        if (dim < 2 || dim > 4) throw new IllegalArgumentException("Unsupported dimension!");
+        this.dim = dim;
+        successors = new int[distances.length * 2 * dim];
+        int[][] matrix = new int[dim][dim];
+        for (int i = 0; i < dim; ++i) matrix[i][i] = i == dim - 1 ? dim - 1 : dim;
+        long[] codes = new long[distances.length];
+        codes[0] = code(matrix);
+        ids.put(codes[0], 0);
+        count = 1;
+        for (int head = 0; head < count; ++head) {
+            decode(codes[head], matrix);
+            int blank = 0;
+            while (sum(matrix[blank]) == dim) blank++;
+            for (int up = 0; up < 2; ++up) {
+                int row = up == 0 ? blank - 1 : blank + 1;
+                for (int goal = 0; goal < dim; ++goal) {
+                    int id = -1;
+                    if (row >= 0 && row < dim && matrix[row][goal] > 0) {
+                        matrix[row][goal]--;
+                        matrix[blank][goal]++;
+                        long code = code(matrix);
+                        id = ids.get(code, -1);
+                        if (id < 0) {
+                            if (count == codes.length) {
+                                codes = Arrays.copyOf(codes, 2 * count);
+                                distances = Arrays.copyOf(distances, 2 * count);
+                                successors = Arrays.copyOf(successors, 2 * count * 2 * dim);
+                            }
+                            id = count++;
+                            codes[id] = code;
+                            distances[id] = (byte) (distances[head] + 1);
+                            ids.put(code, id);
+                        }
+                        matrix[row][goal]++;
+                        matrix[blank][goal]--;
+                    }
+                    successors[(head * 2 + up) * dim + goal] = id;
+                }
+            }
+        }
+    }
+
+    /**
+     * 3 bits per entry, row-major
+     */
+    private static long code(int[][] matrix) {
+        long code = 0;
+        for (int[] row : matrix) for (int entry : row) code = code << 3 | entry;
+        return code;
+    }
+
+    /**
+     * inverse of code
+     */
+    private void decode(long code, int[][] matrix) {
+        for (int i = dim - 1; i >= 0; --i) {
+            for (int j = dim - 1; j >= 0; --j) {
+                matrix[i][j] = (int) (code & 7);
+                code >>>= 3;
+            }
+        }
+    }
+
+    private static int sum(int[] row) {
+        int sum = 0;
+        for (int entry : row) sum += entry;
+        return sum;
+    }
+
+    /**
+     * number of matrices
+     *
+     * @return # of matrices reachable from the goal
+     */
+    public int size() {
+        return count;
+    }
+
+    public long initial(int[] tiles, int dim) {
+        if (dim != this.dim)
+            throw new IllegalArgumentException("Walking distance of another dimension!");
+        int[][] rows = new int[dim][dim], cols = new int[dim][dim];
+        for (int i = 0; i < tiles.length; ++i) {
+            if (tiles[i] == 0) continue;
+            rows[i / dim][(tiles[i] - 1) / dim]++;
+            cols[i % dim][(tiles[i] - 1) % dim]++;
+        }
+        int row = ids.get(code(rows), -1), col = ids.get(code(cols), -1);
+        if (row < 0 || col < 0) throw new IllegalArgumentException("Board is out of the table!");
+        return state(row, col);
+    }
+
+    public long move(long state, int[] tiles, int dim, int from, int to) {
+        int tile = tiles[to];
+        int row = (int) (state >>> 16 & 0xFFFFFF), col = (int) (state >>> 40);
+        // the blank moved from the cell to to the cell from
+        if (from % dim == to % dim)
+            row = successors[(row * 2 + (from < to ? 0 : 1)) * dim + (tile - 1) / dim];
+        else
+            col = successors[(col * 2 + (from < to ? 0 : 1)) * dim + (tile - 1) % dim];
+        return state(row, col);
+    }
+
+    /**
+     * pack a state
+     */
+    private long state(int row, int col) {
+        return (distances[row] + distances[col]) | (long) row << 16 | (long) col << 40;
+    }
+}
@@ -0,0 +1,114 @@
+/* *****************************************************************************
+ *  Name: Chen Wahng
+ *  Date: July 18, 2019
+ *  Description: collinear points grouped by exact slope keys in a hash table
+ **************************************************************************** */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Detect groups of collinear points with size larger than 4 without sorting by slope. For each
+ * anchor the other points are grouped by their exact slope key in an open addressing table of
+ * primitive arrays, keeping the count, the least and the greatest point of each slope, so the
+ * whole detection takes O(n^2) expected time and never compares floating point slopes. A group
+ * is reported by its least point only.
+ */
+public class HashCollinearPoints {
+    private final List<LineSegment> lineSegments;
+
+    /**
+     * constructor to detect all collinear points
+     *
+     * @param points input Point array
+     * @throws IllegalArgumentException input array not valid
+     */
+    public HashCollinearPoints(Point[] points) {
+        if (points == null) throw new IllegalArgumentException();
+        // sorted copy, so comparing points is comparing indices
+        Point[] sorted = new Point[points.length];
+        for (int i = 0; i < points.length; ++i) {
+            if (points[i] == null) throw new IllegalArgumentException();
+            sorted[i] = points[i];
+        }
+        Arrays.sort(sorted);
+        for (int i = 1; i < sorted.length; ++i)
+            if (sorted[i].compareTo(sorted[i - 1]) == 0) throw new IllegalArgumentException();
+        lineSegments = new ArrayList<LineSegment>();
+        int N = sorted.length;
+        if (N < 4) return;
+        // table of at least twice as many slots as slopes, reset per anchor by stamping
+        int capacity = Integer.highestOneBit(2 * N - 1) << 1;
+        long[] keys = new long[capacity];
+        int[] stamps = new int[capacity]; // anchor + 1 of the slot's key, 0 for never used
+        int[] counts = new int[capacity];
+        int[] least = new int[capacity];
+        int[] greatest = new int[capacity];
+        int[] used = new int[N - 1]; // slots taken by the current anchor
+        for (int i = 0; i < N; ++i) {
+            int slopes = 0;
+            for (int j = 0; j < N; ++j) {
+                if (j == i) continue;
+                long key = sorted[i].slopeKey(sorted[j]);
+                int slot = slot(key, capacity);
+                while (stamps[slot] == i + 1 && keys[slot] != key)
+                    slot = (slot + 1) & (capacity - 1);
+                if (stamps[slot] != i + 1) {
+                    stamps[slot] = i + 1;
+                    keys[slot] = key;
+                    counts[slot] = 0;
+                    least[slot] = j;
+                    used[slopes++] = slot;
+                }
+                // j grows, so the first point of a slope is its least and the last its greatest
+                counts[slot]++;
+                greatest[slot] = j;
+            }
+            for (int k = 0; k < slopes; ++k) {
+                int slot = used[k];
+                if (counts[slot] > 2 && i < least[slot])
+                    lineSegments.add(new LineSegment(sorted[i], sorted[greatest[slot]]));
+            }
+        }
+    }
+
+    /**
+     * home slot of a key, mixing all its bits
+     *
+     * @param key      the slope key
+     * @param capacity number of slots, a power of 2
+     * @return the slot
+     */
+    private static int slot(long key, int capacity) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        return (int) key & (capacity - 1);
+    }
+
+    /**
+     * get the number of segments
+     *
+     * @return the number of segments
+     */
+    public int numberOfSegments() {
+        return lineSegments.size();
+    }
+
+    /**
+     * get the array of segments
+     *
+     * @return the array of segments
+     */
+    public LineSegment[] segments() {
+        return lineSegments.toArray(new LineSegment[0]);
+    }
+
+    /**
+     * main method for unit test
+     */
+    public static void main(String[] args) {
+        // do unit test here
+    }
+}
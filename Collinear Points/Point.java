@@ -65,6 +65,40 @@ public class Point implements Comparable<Point> {
         return (double) (that.y - this.y) / (double) (that.x - this.x);
     }
 
+    /**
+     * Returns an exact key of the slope between this point and the specified point. The slope
+     * dy / dx is reduced by the greatest common divisor of |dy| and |dx|, with dx made positive,
+     * and packed as dy in the high 32 bits and dx in the low 32 bits. Two points make the same
+     * slope with this point if and only if their keys are equal. A horizontal segment has dy = 0
+     * and dx = 1, a vertical one dy = 1 and dx = 0, and the degenerate segment to an equal point
+     * has key 0.
+     *
+     * @param that the other point
+     * @return the slope key between this point and the specified point
+     * @throws IllegalArgumentException if the reduced slope does not fit in 32 bits, which never
+     *                                  happens for coordinates between 0 and 32767
+     */
+    public long slopeKey(Point that) {
+        long dy = (long) that.y - this.y, dx = (long) that.x - this.x;
+        if (dy == 0 && dx == 0) return 0;
+        if (dy == 0) return 1;
+        if (dx == 0) return 1L << 32;
+        if (dx < 0) {
+            dy = -dy;
+            dx = -dx;
+        }
+        long a = Math.abs(dy), b = dx;
+        while (b != 0) {
+            long t = a % b;
+            a = b;
+            b = t;
+        }
+        dy /= a;
+        dx /= a;
+        if (dy != (int) dy || dx > 0xFFFFFFFFL) throw new IllegalArgumentException();
+        return dy << 32 | dx;
+    }
+
     /**
      * Compares two points by y-coordinate, breaking ties by x-coordinate. Formally, the invoking
      * point (x0, y0) is less than the argument point (x1, y1) if and only if either y0 < y1 or if
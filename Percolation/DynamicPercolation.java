@@ -0,0 +1,490 @@
+/* *****************************************************************************
+ *  Name: Chen Wang
+ *  Date: Apr 17, 2019
+ *  Description: Percolation with both opening and closing of sites, queries are answered
+ *               offline by a divide-and-conquer over time on a Union Find with rollback
+ *  Usage:
+ *      javac-algs4 DynamicPercolation.java
+ *      java-algs4 DynamicPercolation [size of percolation grid] [number of ticks]
+ *                                    [fraction of sites flipped per tick]
+ *                                    [random seed, optional]
+ **************************************************************************** */
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * class to model a percolation process whose sites can be closed again. Opens, closes and
+ * queries are recorded in order, and solve() answers every query recorded so far in
+ * O((k + m + q) log q log n) for k recorded changes, m sites open at the end of the window and q
+ * queries: each connection between two open neighbors lives on an interval of query times, the
+ * intervals are spread over a segment tree of those times, and a depth-first walk of the tree
+ * unions on the way down and rolls back on the way up. Only the sites of the window are visited
+ * and reset, never the whole grid.
+ */
+public class DynamicPercolation {
+    // status bits of a root, set by the open sites of the top row and the bottom row
+    private static final byte TOP = 1;
+    private static final byte BOTTOM = 2;
+
+    private final int length;
+    private final int[] since; // query time the site was opened, -1 for closed sites
+    private final int[] edgeSince; // query time of the connection to the right / below site
+    private final int[] openSites; // the open sites in no order, count of them
+    private final int[] openSlot; // index of each open site in openSites
+    private final int[] neighbors = new int[4]; // open neighbors of the site being changed
+    private int count;
+    // intervals [lo, hi) of query times, second site -1 for the activation of a single site
+    private int[] first = new int[16];
+    private int[] second = new int[16];
+    private int[] lo = new int[16];
+    private int[] hi = new int[16];
+    private int intervals;
+    // pending queries of this window, site -1 for queryPercolates
+    private int[] querySite = new int[16];
+    private int queries;
+    private int solved; // id of the first pending query
+    private boolean[] answers = new boolean[16];
+    // Union Find with union by size and rollback, rebuilt by every solve
+    private final int[] parent;
+    private final int[] size;
+    private final byte[] flags;
+    private int spanning; // number of roots with both TOP and BOTTOM
+    private int[] history = new int[64];
+    private int top;
+    // segment tree of query times holding linked lists of intervals
+    private int[] head;
+    private int[] next;
+    private int[] item;
+    private int links;
+
+    /**
+     * create n-by-n grid, with all sites blocked
+     *
+     * @param n size of system
+     * @throws IllegalArgumentException when n is nonpositive
+     */
+    public DynamicPercolation(int n) {
+        if (n <= 0) throw new IllegalArgumentException();
+        length = n;
+        since = new int[n * n];
+        edgeSince = new int[2 * n * n];
+        Arrays.fill(since, -1);
+        Arrays.fill(edgeSince, -1);
+        openSites = new int[n * n];
+        openSlot = new int[n * n];
+        parent = new int[n * n];
+        size = new int[n * n];
+        flags = new byte[n * n];
+    }
+
+    /**
+     * check whether index is valid
+     *
+     * @param n col# or row#, in range of [1, length]
+     * @return true for valid index, false for invalid index
+     * @throws IllegalArgumentException when n is nonpositive
+     */
+    private boolean valid(int n) {
+        if (n < 1 || n > length) throw new IllegalArgumentException();
+        else return true;
+    }
+
+    /**
+     * get the plain index of target site
+     *
+     * @param row row# of target site
+     * @param col col# of target site
+     * @return the plain index of target site
+     */
+    private int flatten(int row, int col) {
+        if (valid(row) && valid(col))
+            return (row - 1) * length + col - 1;
+        else return -1;
+    }
+
+    /**
+     * record an interval of query times, empty intervals are dropped
+     *
+     * @param p    first site
+     * @param q    second site, -1 for the activation of p alone
+     * @param from first query time
+     * @param to   query time after the last one
+     */
+    private void record(int p, int q, int from, int to) {
+        if (from >= to) return;
+        if (intervals == first.length) {
+            first = Arrays.copyOf(first, 2 * intervals);
+            second = Arrays.copyOf(second, 2 * intervals);
+            lo = Arrays.copyOf(lo, 2 * intervals);
+            hi = Arrays.copyOf(hi, 2 * intervals);
+        }
+        first[intervals] = p;
+        second[intervals] = q;
+        lo[intervals] = from;
+        hi[intervals++] = to;
+    }
+
+    /**
+     * index of the connection between a site and a neighbor to its right or below
+     *
+     * @param p first site
+     * @param q neighbor of p
+     * @return index into edgeSince
+     */
+    private int edge(int p, int q) {
+        int low = Math.min(p, q);
+        return 2 * low + (Math.abs(p - q) == 1 ? 0 : 1);
+    }
+
+    /**
+     * open neighbors of a site
+     *
+     * @param index plain index of the site
+     * @param out   array of at least 4 entries receiving the neighbors
+     * @return number of open neighbors
+     */
+    private int openNeighbors(int index, int[] out) {
+        int row = index / length, col = index % length, number = 0;
+        if (row > 0 && since[index - length] >= 0) out[number++] = index - length;
+        if (row < length - 1 && since[index + length] >= 0) out[number++] = index + length;
+        if (col > 0 && since[index - 1] >= 0) out[number++] = index - 1;
+        if (col < length - 1 && since[index + 1] >= 0) out[number++] = index + 1;
+        return number;
+    }
+
+    /**
+     * open the given site if it's not open already
+     *
+     * @param row row# of target site
+     * @param col col# of target site
+     */
+    public void open(int row, int col) {
+        int index = flatten(row, col);
+        if (since[index] >= 0) return;
+        since[index] = queries;
+        openSlot[index] = count;
+        openSites[count++] = index;
+        for (int i = openNeighbors(index, neighbors) - 1; i >= 0; --i)
+            edgeSince[edge(index, neighbors[i])] = queries;
+    }
+
+    /**
+     * close the given site if it's open
+     *
+     * @param row row# of target site
+     * @param col col# of target site
+     */
+    public void close(int row, int col) {
+        int index = flatten(row, col);
+        if (since[index] < 0) return;
+        for (int i = openNeighbors(index, neighbors) - 1; i >= 0; --i) {
+            int e = edge(index, neighbors[i]);
+            record(index, neighbors[i], edgeSince[e], queries);
+            edgeSince[e] = -1;
+        }
+        record(index, -1, since[index], queries);
+        since[index] = -1;
+        // move the last open site into the slot of this one
+        int last = openSites[--count];
+        openSites[openSlot[index]] = last;
+        openSlot[last] = openSlot[index];
+    }
+
+    /**
+     * is the site open now?
+     *
+     * @param row row# of target site
+     * @param col col# of target site
+     * @return whther the site is open
+     */
+    public boolean isOpen(int row, int col) {
+        return since[flatten(row, col)] >= 0;
+    }
+
+    /**
+     * number of open sites now
+     *
+     * @return # of open site
+     */
+    public int numberOfOpenSites() {
+        return count;
+    }
+
+    /**
+     * record the query "is the site full now?"
+     *
+     * @param row row# of target site
+     * @param col col# of target site
+     * @return id of the query, answered by answer() after solve()
+     */
+    public int queryFull(int row, int col) {
+        return query(flatten(row, col));
+    }
+
+    /**
+     * record the query "does the system percolate now?"
+     *
+     * @return id of the query, answered by answer() after solve()
+     */
+    public int queryPercolates() {
+        return query(-1);
+    }
+
+    /**
+     * record a query at the current time
+     *
+     * @param site plain index of the site, -1 for queryPercolates
+     * @return id of the query
+     */
+    private int query(int site) {
+        if (queries == querySite.length) querySite = Arrays.copyOf(querySite, 2 * queries);
+        querySite[queries] = site;
+        return solved + queries++;
+    }
+
+    /**
+     * answer of a solved query
+     *
+     * @param id id of the query
+     * @return the answer
+     * @throws IllegalArgumentException when the query is unknown or not solved yet
+     */
+    public boolean answer(int id) {
+        if (id < 0 || id >= solved) throw new IllegalArgumentException();
+        return answers[id];
+    }
+
+    /**
+     * answer every pending query. The sites open now carry over to the next window of queries,
+     * so a long simulation should be solved in windows of many changes and queries rather than
+     * after every change.
+     */
+    public void solve() {
+        // close the intervals of the sites and connections alive at the end of the window
+        for (int k = 0; k < count; ++k) {
+            int index = openSites[k];
+            record(index, -1, since[index], queries);
+            since[index] = 0;
+            for (int i = openNeighbors(index, neighbors) - 1; i >= 0; --i) {
+                if (neighbors[i] < index) continue;
+                int e = edge(index, neighbors[i]);
+                record(index, neighbors[i], edgeSince[e], queries);
+                edgeSince[e] = 0;
+            }
+        }
+        if (answers.length < solved + queries)
+            answers = Arrays.copyOf(answers, Math.max(2 * answers.length, solved + queries));
+        if (queries > 0) {
+            head = new int[4 * queries];
+            Arrays.fill(head, -1);
+            next = new int[16];
+            item = new int[16];
+            links = 0;
+            for (int i = 0; i < intervals; ++i) insert(1, 0, queries, i);
+            // the walk only ever touches the sites of the intervals and of the queries
+            for (int i = 0; i < intervals; ++i) {
+                reset(first[i]);
+                if (second[i] >= 0) reset(second[i]);
+            }
+            for (int i = 0; i < queries; ++i) if (querySite[i] >= 0) reset(querySite[i]);
+            spanning = 0;
+            top = 0;
+            walk(1, 0, queries);
+            head = null;
+            next = null;
+            item = null;
+        }
+        solved += queries;
+        queries = 0;
+        intervals = 0;
+    }
+
+    /**
+     * make a site a singleton of the Union Find
+     *
+     * @param site plain index of the site
+     */
+    private void reset(int site) {
+        parent[site] = site;
+        size[site] = 1;
+        flags[site] = 0;
+    }
+
+    /**
+     * spread an interval over the segment tree nodes covering it
+     *
+     * @param node     node of the segment tree
+     * @param from     first query time of the node
+     * @param to       query time after the last one of the node
+     * @param interval the interval to insert
+     */
+    private void insert(int node, int from, int to, int interval) {
+        if (hi[interval] <= from || to <= lo[interval]) return;
+        if (lo[interval] <= from && to <= hi[interval]) {
+            if (links == item.length) {
+                next = Arrays.copyOf(next, 2 * links);
+                item = Arrays.copyOf(item, 2 * links);
+            }
+            item[links] = interval;
+            next[links] = head[node];
+            head[node] = links++;
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        insert(2 * node, from, mid, interval);
+        insert(2 * node + 1, mid, to, interval);
+    }
+
+    /**
+     * apply the intervals of a node, answer the queries below it, then roll back
+     *
+     * @param node node of the segment tree
+     * @param from first query time of the node
+     * @param to   query time after the last one of the node
+     */
+    private void walk(int node, int from, int to) {
+        int mark = top;
+        for (int link = head[node]; link >= 0; link = next[link]) {
+            int i = item[link];
+            if (second[i] < 0) activate(first[i]);
+            else union(first[i], second[i]);
+        }
+        if (to - from == 1) {
+            int site = querySite[from];
+            answers[solved + from] = site < 0 ? spanning > 0 : (flags[find(site)] & TOP) != 0;
+        }
+        else {
+            int mid = (from + to) >>> 1;
+            walk(2 * node, from, mid);
+            walk(2 * node + 1, mid, to);
+        }
+        while (top > mark) rollback();
+    }
+
+    /**
+     * find the root of a site, without compression so that unions can be rolled back
+     *
+     * @param index plain index of the site
+     * @return plain index of the root
+     */
+    private int find(int index) {
+        while (parent[index] != index) index = parent[index];
+        return index;
+    }
+
+    /**
+     * push an entry of 4 ints onto the rollback history
+     *
+     * @param child    root attached by a union, -1 for an activation
+     * @param root     root whose flags changed
+     * @param oldFlags flags of root before the change
+     * @param delta    change of the number of spanning roots
+     */
+    private void push(int child, int root, int oldFlags, int delta) {
+        if (top + 4 > history.length) history = Arrays.copyOf(history, 2 * history.length);
+        history[top++] = child;
+        history[top++] = root;
+        history[top++] = oldFlags;
+        history[top++] = delta;
+    }
+
+    /**
+     * whether flags mark a root spanning from the top row to the bottom row
+     *
+     * @param bits flags of a root
+     * @return 1 for spanning, 0 otherwise
+     */
+    private static int spans(int bits) {
+        return (bits & (TOP | BOTTOM)) == (TOP | BOTTOM) ? 1 : 0;
+    }
+
+    /**
+     * set the top / bottom flags of an open site of the first or the last row
+     *
+     * @param index plain index of the site
+     */
+    private void activate(int index) {
+        int row = index / length;
+        int bits = (row == 0 ? TOP : 0) | (row == length - 1 ? BOTTOM : 0);
+        if (bits == 0) return;
+        int root = find(index), old = flags[root];
+        flags[root] |= bits;
+        int delta = spans(flags[root]) - spans(old);
+        spanning += delta;
+        push(-1, root, old, delta);
+    }
+
+    /**
+     * merge the components of two sites by size
+     *
+     * @param p first site
+     * @param q second site
+     */
+    private void union(int p, int q) {
+        int rootP = find(p);
+        int rootQ = find(q);
+        if (rootP == rootQ) return;
+        if (size[rootP] > size[rootQ]) {
+            int temp = rootP;
+            rootP = rootQ;
+            rootQ = temp;
+        }
+        int old = flags[rootQ];
+        parent[rootP] = rootQ;
+        size[rootQ] += size[rootP];
+        flags[rootQ] |= flags[rootP];
+        int delta = spans(flags[rootQ]) - spans(old) - spans(flags[rootP]);
+        spanning += delta;
+        push(rootP, rootQ, old, delta);
+    }
+
+    /**
+     * undo the last activation or union
+     */
+    private void rollback() {
+        int delta = history[--top];
+        int old = history[--top];
+        int root = history[--top];
+        int child = history[--top];
+        spanning -= delta;
+        flags[root] = (byte) old;
+        if (child >= 0) {
+            parent[child] = child;
+            size[root] -= size[child];
+        }
+    }
+
+    /**
+     * main function to simulate random flips and count the ticks that percolate
+     *
+     * @param args command line arguments
+     */
+    public static void main(String[] args) {
+        int n = Integer.parseInt(args[0]);
+        int ticks = Integer.parseInt(args[1]);
+        double fraction = Double.parseDouble(args[2]);
+        SplittableRandom random = args.length > 3 ? new SplittableRandom(Long.parseLong(args[3]))
+                                                  : new SplittableRandom();
+        long start = System.currentTimeMillis();
+        DynamicPercolation percolation = new DynamicPercolation(n);
+        for (int row = 1; row <= n; ++row)
+            for (int col = 1; col <= n; ++col)
+                if (random.nextDouble() < 0.6) percolation.open(row, col);
+        int flips = (int) (fraction * n * n);
+        int[] ids = new int[ticks];
+        for (int t = 0; t < ticks; ++t) {
+            for (int i = 0; i < flips; ++i) {
+                int row = random.nextInt(n) + 1, col = random.nextInt(n) + 1;
+                if (percolation.isOpen(row, col)) percolation.close(row, col);
+                else percolation.open(row, col);
+            }
+            ids[t] = percolation.queryPercolates();
+        }
+        percolation.solve();
+        int percolating = 0;
+        for (int id : ids) if (percolation.answer(id)) percolating++;
+        System.out.println(String.format("%d of %d ticks percolate, %d ms", percolating, ticks,
+                                         System.currentTimeMillis() - start));
+    }
+}
@@ -0,0 +1,276 @@
+/* *****************************************************************************
+ *  Name: Chen Wang
+ *  Date: Apr 17, 2019
+ *  Description: Percolation for huge grids, sites are indexed by long, open sites are packed
+ *               into a bitset and the Union Find lives off the Java heap
+ *  Usage: javac-algs4 LargePercolation.java
+ *         java-algs4 LargePercolation [size of percolation grid] [mapped file, optional]
+ **************************************************************************** */
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.SplittableRandom;
+
+/**
+ * class to model the percolation process on grids too large for {@link Percolation}
+ */
+public class LargePercolation implements AutoCloseable {
+    // status bits stored in a root entry of the Union Find
+    private static final long TOP = 1;
+    private static final long BOTTOM = 2;
+
+    private final long[] system; // one bit per site, set for open sites
+    private final LongStore unionFind;
+    private final FileChannel channel;
+    private final int length;
+    private long count;
+    private boolean percolates;
+
+    /**
+     * off-heap array of longs split into segments of at most 1GB, a zero entry is a root without
+     * flags, a positive entry v points to the parent v - 1, a negative entry -f is a root with
+     * flags f
+     */
+    private static class LongStore {
+        private static final int SEGMENT_SHIFT = 27;
+        private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+        private final LongBuffer[] segments;
+
+        /**
+         * allocate zeroed segments in direct buffers, or map them from a channel
+         *
+         * @param size    number of longs
+         * @param channel channel of a truncated file, null for direct buffers
+         * @throws IOException when the file cannot be mapped
+         */
+        public LongStore(long size, FileChannel channel) throws IOException {
+            int number = (int) ((size + SEGMENT_MASK) >>> SEGMENT_SHIFT);
+            segments = new LongBuffer[number];
+            for (int i = 0; i < number; ++i) {
+                long longs = Math.min(size - ((long) i << SEGMENT_SHIFT), 1L << SEGMENT_SHIFT);
+                ByteBuffer buffer;
+                if (channel == null) buffer = ByteBuffer.allocateDirect((int) (longs * 8));
+                else buffer = channel.map(FileChannel.MapMode.READ_WRITE,
+                                          ((long) i << SEGMENT_SHIFT) * 8, longs * 8);
+                segments[i] = buffer.order(ByteOrder.nativeOrder()).asLongBuffer();
+            }
+        }
+
+        public long get(long index) {
+            return segments[(int) (index >>> SEGMENT_SHIFT)].get((int) (index & SEGMENT_MASK));
+        }
+
+        public void set(long index, long value) {
+            segments[(int) (index >>> SEGMENT_SHIFT)].put((int) (index & SEGMENT_MASK), value);
+        }
+    }
+
+    /**
+     * create n-by-n grid, with all sites blocked, the Union Find is kept in direct buffers so the
+     * JVM needs -XX:MaxDirectMemorySize of at least 8 * n^2 bytes
+     *
+     * @param n size of system
+     * @throws IllegalArgumentException when n is nonpositive or too large for the bitset
+     */
+    public LargePercolation(int n) {
+        this(n, null);
+    }
+
+    /**
+     * create n-by-n grid, with all sites blocked, the Union Find is kept in a memory-mapped file
+     * which is truncated first
+     *
+     * @param n    size of system
+     * @param file backing file of the Union Find, null for direct buffers
+     * @throws IllegalArgumentException when n is nonpositive or too large for the bitset
+     * @throws UncheckedIOException     when the file cannot be mapped
+     */
+    public LargePercolation(int n, Path file) {
+        if (n <= 0) throw new IllegalArgumentException();
+        long sites = (long) n * n;
+        if (((sites + 63) >>> 6) > Integer.MAX_VALUE - 8) throw new IllegalArgumentException();
+        system = new long[(int) ((sites + 63) >>> 6)];
+        length = n;
+        try {
+            channel = file == null ? null : FileChannel.open(file,
+                                                             StandardOpenOption.CREATE,
+                                                             StandardOpenOption.READ,
+                                                             StandardOpenOption.WRITE,
+                                                             StandardOpenOption.TRUNCATE_EXISTING);
+            unionFind = new LongStore(sites, channel);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * check whether index is valid
+     *
+     * @param n col# or row#, in range of [1, length]
+     * @return true for valid index, false for invalid index
+     * @throws IllegalArgumentException when n is nonpositive
+     */
+    private boolean valid(int n) {
+        if (n < 1 || n > length) throw new IllegalArgumentException();
+        else return true;
+    }
+
+    /**
+     * get the plain index of target site
+     *
+     * @param row row# of target site
+     * @param col col# of target site
+     * @return the plain index of target site
+     */
+    private long flatten(int row, int col) {
+        if (valid(row) && valid(col))
+            return (long) (row - 1) * length + col - 1;
+        else return -1;
+    }
+
+    /**
+     * is the site with the plain index open?
+     *
+     * @param index plain index of the site
+     * @return whether the site is open
+     */
+    private boolean isOpen(long index) {
+        return (system[(int) (index >>> 6)] & (1L << index)) != 0;
+    }
+
+    /**
+     * find the root of a site, halving the path on the way
+     *
+     * @param index plain index of the site
+     * @return plain index of the root
+     */
+    private long find(long index) {
+        long next = unionFind.get(index);
+        while (next > 0) {
+            long grand = unionFind.get(next - 1);
+            if (grand <= 0) return next - 1;
+            unionFind.set(index, grand);
+            index = grand - 1;
+            next = unionFind.get(index);
+        }
+        return index;
+    }
+
+    /**
+     * merge the components of two sites and their top / bottom flags
+     *
+     * @param p plain index of the first site
+     * @param q plain index of the second site
+     */
+    private void union(long p, long q) {
+        long rootP = find(p);
+        long rootQ = find(q);
+        if (rootP == rootQ) return;
+        long flags = -unionFind.get(rootP) | -unionFind.get(rootQ);
+        unionFind.set(rootP, rootQ + 1);
+        unionFind.set(rootQ, -flags);
+        if (flags == (TOP | BOTTOM)) percolates = true;
+    }
+
+    /**
+     * open the given site if it's not open already
+     *
+     * @param row row# of target site
+     * @param col col# of target site
+     */
+    public void open(int row, int col) {
+        long index = flatten(row, col);
+        if (isOpen(index)) return;
+        system[(int) (index >>> 6)] |= 1L << index;
+        count++;
+        // mark the site touching the top row or the bottom row
+        long flags = (row == 1 ? TOP : 0) | (row == length ? BOTTOM : 0);
+        unionFind.set(index, -flags);
+        if (flags == (TOP | BOTTOM)) percolates = true;
+        if (row > 1 && isOpen(index - length)) union(index, index - length);
+        if (row < length && isOpen(index + length)) union(index, index + length);
+        if (col > 1 && isOpen(index - 1)) union(index, index - 1);
+        if (col < length && isOpen(index + 1)) union(index, index + 1);
+    }
+
+    /**
+     * is the site open?
+     *
+     * @param row row# of target site
+     * @param col col# of target site
+     * @return whther the site is open
+     */
+    public boolean isOpen(int row, int col) {
+        return isOpen(flatten(row, col));
+    }
+
+    /**
+     * is site full?
+     *
+     * @param row row# of target site
+     * @param col col# of target site
+     * @return whether the site is connected with top row
+     */
+    public boolean isFull(int row, int col) {
+        long index = flatten(row, col);
+        return isOpen(index) && (-unionFind.get(find(index)) & TOP) != 0;
+    }
+
+    /**
+     * number of open sites
+     *
+     * @return # of open site
+     */
+    public long numberOfOpenSites() {
+        return count;
+    }
+
+    /**
+     * does the system percolates?
+     *
+     * @return whether the system percolates
+     */
+    public boolean percolates() {
+        return percolates;
+    }
+
+    /**
+     * release the backing file, the mapping itself is dropped with this object
+     */
+    public void close() {
+        if (channel == null) return;
+        try {
+            channel.close();
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * main function to estimate the threshold of one large grid
+     *
+     * @param args command line arguments
+     */
+    public static void main(String[] args) {
+        int n = Integer.parseInt(args[0]);
+        Path file = args.length > 1 ? Path.of(args[1]) : null;
+        SplittableRandom random = new SplittableRandom();
+        try (LargePercolation percolation = new LargePercolation(n, file)) {
+            while (!percolation.percolates()) {
+                int row = random.nextInt(n) + 1;
+                int col = random.nextInt(n) + 1;
+                percolation.open(row, col);
+            }
+            System.out.printf("threshold = %.10f\n",
+                              (double) percolation.numberOfOpenSites() / ((double) n * n));
+        }
+    }
+}
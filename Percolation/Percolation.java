@@ -1,21 +1,90 @@
 /* *****************************************************************************
  *  Name: Chen Wang
  *  Date: Apr 17, 2019
- *  Description: Percolation based on Weighted & Path Compressed Quick Union Find
+ *  Description: Percolation based on a grid specialized Union Find with path halving
  *  Usage: javac-algs4 Percolation.java
  **************************************************************************** */
 
-import edu.princeton.cs.algs4.WeightedQuickUnionUF;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * class to model the percolation process
  */
 public class Percolation {
-    private boolean[] system;
-    private final WeightedQuickUnionUF unionFind;
-    private final WeightedQuickUnionUF unionFindHelper;
+    // status bits of a site, TOP and BOTTOM are only meaningful on a root
+    private static final byte OPEN = 1;
+    private static final byte TOP = 2;
+    private static final byte BOTTOM = 4;
+
+    private final byte[] status;
+    private final int[] parent;
     private final int length;
     private int count;
+    private boolean percolates;
+    private final List<Listener> listeners = new ArrayList<>();
+    private boolean instrumented;
+    private long unions;
+    private long finds;
+    private long hops;
+
+    /**
+     * callback fired once, by the open that makes the system percolate
+     */
+    public interface Listener {
+        /**
+         * the system has just percolated
+         *
+         * @param openSites # of open sites at that moment
+         */
+        void percolated(int openSites);
+    }
+
+    /**
+     * immutable snapshot of the Union Find counters
+     */
+    public static final class Metrics {
+        private final long unions;
+        private final long finds;
+        private final long hops;
+
+        private Metrics(long unions, long finds, long hops) {
+            this.unions = unions;
+            this.finds = finds;
+            this.hops = hops;
+        }
+
+        /**
+         * number of union calls
+         *
+         * @return # of unions
+         */
+        public long unions() {
+            return unions;
+        }
+
+        /**
+         * number of find calls, including those made by unions
+         *
+         * @return # of finds
+         */
+        public long finds() {
+            return finds;
+        }
+
+        /**
+         * total number of parent links followed by the finds, each one halving the path
+         *
+         * @return # of path compression hops
+         */
+        public long hops() {
+            return hops;
+        }
+
+        public String toString() {
+            return String.format("unions = %d, finds = %d, hops = %d", unions, finds, hops);
+        }
+    }
 
     /**
      * create n-by-n grid, with all sites blocked
@@ -25,12 +94,11 @@ public class Percolation {
      */
     public Percolation(int n) {
         if (n <= 0) throw new IllegalArgumentException();
-        system = new boolean[n * n]; // check status (open / closed)
-        // create two virtual site for top and bottom row
-        // index n^2 for top row, index (n^2 + 1) for bottom row
-        unionFind = new WeightedQuickUnionUF(n * n + 2);
-        // another UnionFind structure to solve the backwash problem
-        unionFindHelper = new WeightedQuickUnionUF(n * n + 1);
+        // one parent array replaces the two union find structures with virtual top and bottom
+        // sites, each root records whether its component touches the top or the bottom row
+        status = new byte[n * n];
+        parent = new int[n * n];
+        for (int i = 0; i < parent.length; ++i) parent[i] = i;
         length = n;
         count = 0;
     }
@@ -61,6 +129,38 @@ public class Percolation {
         else return -1;
     }
 
+    /**
+     * find the root of a site, halving the path on the way
+     *
+     * @param index plain index of the site
+     * @return plain index of the root
+     */
+    private int find(int index) {
+        if (instrumented) finds++;
+        while (parent[index] != index) {
+            parent[index] = parent[parent[index]];
+            index = parent[index];
+            if (instrumented) hops++;
+        }
+        return index;
+    }
+
+    /**
+     * merge the components of two sites and their top / bottom flags
+     *
+     * @param p plain index of the first site
+     * @param q plain index of the second site
+     */
+    private void union(int p, int q) {
+        if (instrumented) unions++;
+        int rootP = find(p);
+        int rootQ = find(q);
+        if (rootP == rootQ) return;
+        parent[rootP] = rootQ;
+        status[rootQ] |= status[rootP];
+        if ((status[rootQ] & (TOP | BOTTOM)) == (TOP | BOTTOM)) percolates = true;
+    }
+
     /**
      * open the given site if it's not open already
      *
@@ -68,40 +168,85 @@ public class Percolation {
      * @param col col# of target site
      */
     public void open(int row, int col) {
-        if (valid(row) && valid(col) && !isOpen(row, col)) {
-            int index = flatten(row, col);
-            system[index] = true;
-            count++;
-            // open the virtual top row site
-            if (row == 1) {
-                unionFind.union(col - 1, length * length);
-                unionFindHelper.union(col - 1, length * length);
-            }
-            // open the virtual bottom row site
-            if (row == length)
-                unionFind.union((length - 1) * length + col - 1,
-                                length * length + 1);
-            // check for the above site, if open, union them
-            if (row > 1 && system[index - length]) {
-                unionFind.union(index, index - length);
-                unionFindHelper.union(index, index - length);
-            }
-            // check for the below site, if open, union them
-            if (row < length && system[index + length]) {
-                unionFind.union(index, index + length);
-                unionFindHelper.union(index, index + length);
-            }
-            // check for the left site, if open, union them
-            if (col > 1 && system[index - 1]) {
-                unionFind.union(index, index - 1);
-                unionFindHelper.union(index, index - 1);
-            }
-            // check for the right site, if open, union them
-            if (col < length && system[index + 1]) {
-                unionFind.union(index, index + 1);
-                unionFindHelper.union(index, index + 1);
-            }
+        if (valid(row) && valid(col) && !isOpen(row, col)) open(flatten(row, col));
+    }
+
+    /**
+     * open the sites of order[from, to) one by one, skipping open sites, and stop right after the
+     * system percolates
+     *
+     * @param order plain indices of sites, (row - 1) * n + col - 1
+     * @param from  first position of order to open
+     * @param to    position after the last one to open
+     * @return position after the last opened site
+     * @throws IllegalArgumentException when the range or any index is invalid
+     */
+    public int open(int[] order, int from, int to) {
+        if (order == null || from < 0 || to > order.length || from > to)
+            throw new IllegalArgumentException();
+        int position = from;
+        while (position < to && !percolates) {
+            int index = order[position++];
+            if (index < 0 || index >= status.length) throw new IllegalArgumentException();
+            if (status[index] == 0) open(index);
         }
+        return position;
+    }
+
+    /**
+     * open a closed site and union it with its open neighbors
+     *
+     * @param index plain index of a closed site
+     */
+    private void open(int index) {
+        int row = index / length + 1, col = index % length + 1;
+        boolean wasPercolating = percolates;
+        status[index] |= OPEN;
+        count++;
+        // mark the site touching the top row or the bottom row
+        if (row == 1) status[index] |= TOP;
+        if (row == length) status[index] |= BOTTOM;
+        if ((status[index] & (TOP | BOTTOM)) == (TOP | BOTTOM)) percolates = true;
+        // check for the above site, if open, union them
+        if (row > 1 && status[index - length] != 0) union(index, index - length);
+        // check for the below site, if open, union them
+        if (row < length && status[index + length] != 0) union(index, index + length);
+        // check for the left site, if open, union them
+        if (col > 1 && status[index - 1] != 0) union(index, index - 1);
+        // check for the right site, if open, union them
+        if (col < length && status[index + 1] != 0) union(index, index + 1);
+        if (percolates && !wasPercolating)
+            for (Listener listener : listeners) listener.percolated(count);
+    }
+
+    /**
+     * register a callback fired once, when the system first percolates, a listener added after
+     * that is never fired
+     *
+     * @param listener the callback
+     * @throws IllegalArgumentException when listener is null
+     */
+    public void addListener(Listener listener) {
+        if (listener == null) throw new IllegalArgumentException();
+        listeners.add(listener);
+    }
+
+    /**
+     * turn the Union Find counters on or off, they are off by default to keep find cheap
+     *
+     * @param enabled whether to count
+     */
+    public void setInstrumented(boolean enabled) {
+        instrumented = enabled;
+    }
+
+    /**
+     * snapshot of the Union Find counters accumulated while instrumented
+     *
+     * @return the counters
+     */
+    public Metrics metrics() {
+        return new Metrics(unions, finds, hops);
     }
 
     /**
@@ -113,7 +258,7 @@ public class Percolation {
      */
     public boolean isOpen(int row, int col) {
         if (valid(row) && valid(col))
-            return system[flatten(row, col)];
+            return status[flatten(row, col)] != 0;
         else
             return false;
     }
@@ -126,8 +271,38 @@ public class Percolation {
      * @return whether the site is connected with top row
      */
     public boolean isFull(int row, int col) {
-        return isOpen(row, col) && unionFindHelper
-                .connected(flatten(row, col), length * length);
+        return isOpen(row, col) && (status[find(flatten(row, col))] & TOP) != 0;
+    }
+
+    /**
+     * all full sites at once, bit (i % 64) of word (i / 64) is set when the site with the plain
+     * index i = (row - 1) * n + col - 1 is full
+     *
+     * @return the packed bitmap
+     */
+    public long[] fullSites() {
+        return fullSites(new long[(status.length + 63) >>> 6]);
+    }
+
+    /**
+     * all full sites at once into a reusable bitmap, each site is linked straight to its root on
+     * the way, so the sites behind it resolve their root in one more hop
+     *
+     * @param bitmap packed bitmap of at least (n * n + 63) / 64 words, overwritten
+     * @return the bitmap
+     * @throws IllegalArgumentException when bitmap is too short
+     */
+    public long[] fullSites(long[] bitmap) {
+        if (bitmap == null || bitmap.length < (status.length + 63) >>> 6)
+            throw new IllegalArgumentException();
+        for (int i = 0; i < bitmap.length; ++i) bitmap[i] = 0;
+        for (int i = 0; i < status.length; ++i) {
+            if (status[i] == 0) continue;
+            int root = find(i);
+            parent[i] = root;
+            if ((status[root] & TOP) != 0) bitmap[i >>> 6] |= 1L << i;
+        }
+        return bitmap;
     }
 
     /**
@@ -145,7 +320,7 @@ public class Percolation {
      * @return whether the system percolatesw
      */
     public boolean percolates() {
-        return unionFind.connected(length * length, length * length + 1);
+        return percolates;
     }
 
     /**
@@ -0,0 +1,154 @@
+/* *****************************************************************************
+ *  Name: Chen Wang
+ *  Date: Apr 17, 2019
+ *  Description: K percolation experiments run in lockstep on struct-of-arrays storage that is
+ *               reset in place between batches
+ *  Usage: javac-algs4 PercolationBatch.java
+ **************************************************************************** */
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * a mutable class running batches of percolation experiments without allocating per experiment,
+ * experiment t owns the slice [t * n^2, (t + 1) * n^2) of every array
+ */
+public class PercolationBatch {
+    // status bits of a site, TOP and BOTTOM are only meaningful on a root
+    private static final byte OPEN = 1;
+    private static final byte TOP = 2;
+    private static final byte BOTTOM = 4;
+
+    private final int length;
+    private final int sites;
+    private final int width;
+    private final byte[] status;
+    private final int[] parent; // only valid for open sites, set when the site is opened
+    private final int[] order; // the sites of each experiment, shuffled lazily
+    private final int[] active; // experiments that have not percolated yet
+
+    /**
+     * create storage for batches of experiments on n-by-n grids
+     *
+     * @param n      size of square grid
+     * @param aWidth number of experiments run in lockstep
+     * @throws IllegalArgumentException when any size is nonpositive or the storage is too large
+     */
+    public PercolationBatch(int n, int aWidth) {
+        if (n < 1 || aWidth < 1 || (long) n * n * aWidth > Integer.MAX_VALUE)
+            throw new IllegalArgumentException();
+        length = n;
+        sites = n * n;
+        width = aWidth;
+        status = new byte[sites * width];
+        parent = new int[sites * width];
+        order = new int[sites * width];
+        active = new int[width];
+        restart();
+    }
+
+    /**
+     * number of experiments run in lockstep
+     *
+     * @return # of experiments per batch
+     */
+    public int width() {
+        return width;
+    }
+
+    /**
+     * restore the site permutations to the identity, the batches run after a restart only depend
+     * on their random streams
+     */
+    public void restart() {
+        for (int t = 0; t < width; ++t)
+            for (int i = 0; i < sites; ++i) order[t * sites + i] = i;
+    }
+
+    /**
+     * find the root of a site, halving the path on the way
+     *
+     * @param index index of the site in the arrays
+     * @return index of the root
+     */
+    private int find(int index) {
+        while (parent[index] != index) {
+            parent[index] = parent[parent[index]];
+            index = parent[index];
+        }
+        return index;
+    }
+
+    /**
+     * merge the components of two sites and their top / bottom flags
+     *
+     * @param p index of the first site
+     * @param q index of the second site
+     * @return whether the merged component touches both the top and the bottom row
+     */
+    private boolean union(int p, int q) {
+        int rootP = find(p);
+        int rootQ = find(q);
+        if (rootP != rootQ) {
+            parent[rootP] = rootQ;
+            status[rootQ] |= status[rootP];
+        }
+        return (status[rootQ] & (TOP | BOTTOM)) == (TOP | BOTTOM);
+    }
+
+    /**
+     * open a closed site and union it with its open neighbors
+     *
+     * @param base  offset of the experiment in the arrays
+     * @param plain plain index of the site in its grid
+     * @return whether the experiment percolates after the open
+     */
+    private boolean open(int base, int plain) {
+        int row = plain / length, col = plain % length, index = base + plain;
+        parent[index] = index;
+        status[index] = OPEN;
+        if (row == 0) status[index] |= TOP;
+        if (row == length - 1) status[index] |= BOTTOM;
+        boolean percolates = (status[index] & (TOP | BOTTOM)) == (TOP | BOTTOM);
+        if (row > 0 && status[index - length] != 0)
+            percolates |= union(index, index - length);
+        if (row < length - 1 && status[index + length] != 0)
+            percolates |= union(index, index + length);
+        if (col > 0 && status[index - 1] != 0) percolates |= union(index, index - 1);
+        if (col < length - 1 && status[index + 1] != 0) percolates |= union(index, index + 1);
+        return percolates;
+    }
+
+    /**
+     * run one batch of experiments in lockstep, every step opens one random closed site in each
+     * experiment that has not percolated yet, the permutations left by the previous batch are
+     * shuffled further rather than reset
+     *
+     * @param random     random stream of the batch
+     * @param thresholds fraction of open sites when each experiment percolates, the first width()
+     *                   entries are written
+     * @throws IllegalArgumentException when thresholds is shorter than width()
+     */
+    public void run(SplittableRandom random, double[] thresholds) {
+        if (thresholds == null || thresholds.length < width) throw new IllegalArgumentException();
+        Arrays.fill(status, (byte) 0);
+        for (int t = 0; t < width; ++t) active[t] = t;
+        int remaining = width;
+        for (int step = 0; remaining > 0; ++step) {
+            int i = 0;
+            while (i < remaining) {
+                int t = active[i], base = t * sites;
+                // one Fisher-Yates step on the permutation of this experiment
+                int j = base + step + random.nextInt(sites - step);
+                int plain = order[j];
+                order[j] = order[base + step];
+                order[base + step] = plain;
+                if (open(base, plain)) {
+                    thresholds[t] = (double) (step + 1) / sites;
+                    active[i] = active[--remaining];
+                }
+                else i++;
+            }
+        }
+    }
+}
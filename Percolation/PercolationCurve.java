@@ -0,0 +1,121 @@
+/* *****************************************************************************
+ *  Name: Chen Wang
+ *  Date: Apr 17, 2019
+ *  Description: Newman-Ziff sweep, every trial opens all sites of a random permutation once
+ *               and the spanning probability P(p) for any p is derived by binomial convolution
+ *  Usage:
+ *      javac-algs4 PercolationCurve.java
+ *      java-algs4 PercolationCurve [size of percolation grid] [number of experiments]
+ *                                  [number of points on the curve] [random seed, optional]
+ **************************************************************************** */
+
+import java.util.SplittableRandom;
+
+/**
+ * functional class to compute the spanning probability curve of the percolation process
+ */
+public class PercolationCurve {
+    // weights below this fraction of the peak binomial weight are dropped
+    private static final double EPSILON = 1e-16;
+    private final int sites;
+    private final double[] spanning; // spanning[k]: fraction of trials percolating with k opens
+
+    /**
+     * perform trials sweeps on an n-by-n grid, each sweep records the exact number of open sites
+     * at which the system first percolates
+     *
+     * @param n       size of square grid
+     * @param aTrials number of experiments
+     * @param seed    seed of the random stream
+     * @throws IllegalArgumentException when any size is nonpositive
+     */
+    public PercolationCurve(int n, int aTrials, long seed) {
+        if (n < 1 || aTrials < 1) throw new IllegalArgumentException();
+        sites = n * n;
+        long[] histogram = new long[sites + 1];
+        SplittableRandom random = new SplittableRandom(seed);
+        int[] order = new int[sites];
+        for (int i = 0; i < sites; ++i) order[i] = i;
+        for (int t = 0; t < aTrials; ++t) {
+            Percolation percolation = new Percolation(n);
+            int k = 0;
+            // shuffle lazily, only the prefix opened before percolating is ever drawn
+            while (!percolation.percolates()) {
+                int j = k + random.nextInt(sites - k);
+                int temp = order[k];
+                order[k] = order[j];
+                order[j] = temp;
+                k = percolation.open(order, k, k + 1);
+            }
+            histogram[k]++;
+        }
+        // cumulate the first-percolation counts into R(k)
+        spanning = new double[sites + 1];
+        long cumulative = 0;
+        for (int k = 0; k <= sites; ++k) {
+            cumulative += histogram[k];
+            spanning[k] = (double) cumulative / aTrials;
+        }
+    }
+
+    /**
+     * spanning probability when every site is open with probability p, the convolution of R(k)
+     * with the binomial distribution B(N, k, p), starting from the peak of the distribution and
+     * walking both ways until the weights vanish
+     *
+     * @param p site vacancy probability
+     * @return probability that the system percolates
+     * @throws IllegalArgumentException when p is out of [0, 1]
+     */
+    public double probability(double p) {
+        if (!(p >= 0 && p <= 1)) throw new IllegalArgumentException();
+        if (p == 0) return spanning[0];
+        if (p == 1) return spanning[sites];
+        int peak = (int) Math.floor(sites * p);
+        double ratio = p / (1 - p);
+        double total = 1, sum = spanning[peak];
+        double weight = 1;
+        for (int k = peak; k < sites && weight > EPSILON; ++k) {
+            weight *= (double) (sites - k) / (k + 1) * ratio;
+            total += weight;
+            sum += weight * spanning[k + 1];
+        }
+        weight = 1;
+        for (int k = peak; k > 0 && weight > EPSILON; --k) {
+            weight *= (double) k / (sites - k + 1) / ratio;
+            total += weight;
+            sum += weight * spanning[k - 1];
+        }
+        return sum / total;
+    }
+
+    /**
+     * the curve sampled at evenly spaced p as a CSV-style table
+     *
+     * @param points number of samples, including p = 0 and p = 1
+     * @return the table with a header line
+     * @throws IllegalArgumentException when points is less than 2
+     */
+    public String toCsv(int points) {
+        if (points < 2) throw new IllegalArgumentException();
+        StringBuilder sb = new StringBuilder("p,probability\n");
+        for (int i = 0; i < points; ++i) {
+            double p = (double) i / (points - 1);
+            sb.append(String.format("%.6f,%.10f\n", p, probability(p)));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * main function to print the curve
+     *
+     * @param args command line arguments
+     */
+    public static void main(String[] args) {
+        int n = Integer.parseInt(args[0]);
+        int trials = Integer.parseInt(args[1]);
+        int points = Integer.parseInt(args[2]);
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : System.nanoTime();
+        System.out.print(new PercolationCurve(n, trials, seed).toCsv(points));
+    }
+}
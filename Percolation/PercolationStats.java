@@ -1,4 +1,3 @@
-
 /* *****************************************************************************
  *  Name: Chen Wang
  *  Date: Apr 17, 2019
@@ -6,22 +5,115 @@
  *  Useage:
  *      javac-algs4 PercolationStats.java
  *      java-algs4 PercolationStats [size of percolation grid]
- *                                  [number of experiments]
+ *                                  [number of experiments, or the target half-width of the
+ *                                   95% confidence interval when below 1]
+ *                                  [number of threads, optional]
+ *                                  [random seed, optional]
+ *                                  [time budget in seconds, optional]
  **************************************************************************** */
 
 import edu.princeton.cs.algs4.StdRandom;
-import edu.princeton.cs.algs4.StdStats;
 import edu.princeton.cs.algs4.Stopwatch;
 
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
 /**
  * functional class to compute the statistics of the percolation process
  */
 public class PercolationStats {
     private static final double CONFIDENCE = 1.96;
+    private static final int BLOCK = 16; // trials sharing one random stream and one accumulator
+    private static final int ROUND = 64; // blocks run between two checks of the stopping rule
+    private static final int LOCKSTEP = 32; // largest grid running a whole block in lockstep
     private final int trials;
     private final double mean;
     private final double stddev;
 
+    /**
+     * Welford accumulator of mean and sum of squared deviations, merged with Chan's formula
+     */
+    private static class Accumulator {
+        private long count;
+        private double mean;
+        private double m2;
+
+        public void add(double x) {
+            count++;
+            double delta = x - mean;
+            mean += delta / count;
+            m2 += delta * (x - mean);
+        }
+
+        public void merge(Accumulator that) {
+            if (that.count == 0) return;
+            long total = count + that.count;
+            double delta = that.mean - mean;
+            mean += delta * that.count / total;
+            m2 += that.m2 + delta * delta * ((double) count * that.count / total);
+            count = total;
+        }
+
+        public double stddev() {
+            return Math.sqrt(m2 / (count - 1));
+        }
+
+        public double halfWidth() {
+            return CONFIDENCE * stddev() / Math.sqrt(count);
+        }
+    }
+
+    /**
+     * fork-join task running a range of blocks, every block draws from its own split random
+     * stream into its own accumulator, so the result does not depend on scheduling. A block
+     * already run is kept, and a block other than the first one that would start after the
+     * deadline is skipped and left null.
+     */
+    private static class BlockTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final ThreadLocal<PercolationBatch> batches;
+        private final SplittableRandom[] streams;
+        private final int[] sizes;
+        private final Accumulator[] blocks;
+        private final long deadline; // by System.currentTimeMillis()
+        private final int lo;
+        private final int hi;
+
+        public BlockTask(ThreadLocal<PercolationBatch> batches, SplittableRandom[] streams,
+                         int[] sizes, Accumulator[] blocks, long deadline, int lo, int hi) {
+            this.batches = batches;
+            this.streams = streams;
+            this.sizes = sizes;
+            this.blocks = blocks;
+            this.deadline = deadline;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        protected void compute() {
+            if (hi - lo == 1) {
+                if (blocks[lo] != null) return;
+                // the first block always runs, so every round makes progress
+                if (lo > 0 && System.currentTimeMillis() >= deadline) return;
+                // every worker thread reuses its own batch storage for all of its blocks
+                PercolationBatch batch = batches.get();
+                double[] thresholds = new double[batch.width()];
+                batch.restart();
+                blocks[lo] = new Accumulator();
+                for (int done = 0; done < sizes[lo]; done += thresholds.length) {
+                    batch.run(streams[lo], thresholds);
+                    for (int i = 0; i < Math.min(thresholds.length, sizes[lo] - done); ++i)
+                        blocks[lo].add(thresholds[i]);
+                }
+                return;
+            }
+            int mid = (lo + hi) >>> 1;
+            invokeAll(new BlockTask(batches, streams, sizes, blocks, deadline, lo, mid),
+                      new BlockTask(batches, streams, sizes, blocks, deadline, mid, hi));
+        }
+    }
+
     /**
      * perform trials independent experiments on an n-by-n grids
      *
@@ -29,30 +121,147 @@ public class PercolationStats {
      * @param aTrials number of experiments
      */
     public PercolationStats(int n, int aTrials) {
-        if (n < 1 || aTrials < 1) throw new IllegalArgumentException();
-        trials = aTrials;
-        double[] stats = new double[trials];
-        for (int i = 0; i < trials; ++i) {
-            Percolation percolation = new Percolation(n);
-            while (!percolation.percolates()) {
-                int col = StdRandom.uniform(n) + 1;
-                int row = StdRandom.uniform(n) + 1;
-                while (percolation.isOpen(row, col)) {
-                    col = StdRandom.uniform(n) + 1;
-                    row = StdRandom.uniform(n) + 1;
+        this(n, aTrials, StdRandom.getSeed(), Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * perform trials independent experiments on an n-by-n grids in parallel, the statistics are
+     * identical for the same seed whatever the number of threads is
+     *
+     * @param n       size of square grid
+     * @param aTrials number of experiments
+     * @param seed    seed of the root random stream
+     * @param threads number of worker threads
+     * @throws IllegalArgumentException when any size is nonpositive
+     */
+    public PercolationStats(int n, int aTrials, long seed, int threads) {
+        this(n, aTrials, 0, Long.MAX_VALUE, 0, seed, threads);
+    }
+
+    /**
+     * perform experiments on an n-by-n grids in parallel until the half-width of the 95%
+     * confidence interval drops below epsilon or the time budget expires, the precision is
+     * checked after every block of trials merged in order and the time before every block
+     *
+     * @param n            size of square grid
+     * @param epsilon      target half-width of the 95% confidence interval
+     * @param budgetMillis time budget in milliseconds
+     * @param reportMillis interval of progress reports on stderr in milliseconds, 0 for none
+     * @param seed         seed of the root random stream
+     * @param threads      number of worker threads
+     * @throws IllegalArgumentException when any size is nonpositive
+     */
+    public PercolationStats(int n, double epsilon, long budgetMillis, long reportMillis,
+                            long seed, int threads) {
+        this(n, Integer.MAX_VALUE, positive(epsilon), budgetMillis, reportMillis, seed, threads);
+    }
+
+    /**
+     * check whether the precision target is positive
+     *
+     * @param epsilon target half-width of the confidence interval
+     * @return epsilon itself
+     * @throws IllegalArgumentException when epsilon is not positive
+     */
+    private static double positive(double epsilon) {
+        if (!(epsilon > 0)) throw new IllegalArgumentException();
+        return epsilon;
+    }
+
+    /**
+     * run rounds of blocks until the stopping rule holds, and merge the blocks in order. A round
+     * ends at the time budget or at the next progress report, the blocks it skipped are carried
+     * to the next round, so the merged blocks are always the leading ones of the same sequence
+     *
+     * @param n            size of square grid
+     * @param maxTrials    maximum number of experiments
+     * @param epsilon      target half-width of the confidence interval, 0 to run all trials
+     * @param budgetMillis time budget in milliseconds
+     * @param reportMillis interval of progress reports in milliseconds, 0 for none
+     * @param seed         seed of the root random stream
+     * @param threads      number of worker threads
+     */
+    private PercolationStats(int n, int maxTrials, double epsilon, long budgetMillis,
+                             long reportMillis, long seed, int threads) {
+        if (n < 1 || maxTrials < 1 || threads < 1 || budgetMillis < 0 || reportMillis < 0)
+            throw new IllegalArgumentException();
+        long start = System.currentTimeMillis();
+        long reported = start;
+        long end = budgetMillis > Long.MAX_VALUE - start ? Long.MAX_VALUE : start + budgetMillis;
+        Accumulator total = new Accumulator();
+        // split the streams in block order on this thread to keep them reproducible
+        SplittableRandom root = new SplittableRandom(seed);
+        SplittableRandom[] streams = new SplittableRandom[ROUND];
+        int[] sizes = new int[ROUND];
+        Accumulator[] blocks = new Accumulator[ROUND];
+        // small grids run a whole block in lockstep, large grids one trial at a time
+        int width = n <= LOCKSTEP ? BLOCK : 1;
+        ThreadLocal<PercolationBatch> batches
+                = ThreadLocal.withInitial(() -> new PercolationBatch(n, width));
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        // an adaptive run on a large grid runs a block per thread at a time, so little work is
+        // wasted past the block reaching the precision
+        int round = epsilon > 0 && n > LOCKSTEP ? Math.min(ROUND, threads) : ROUND;
+        int carried = 0; // blocks skipped by the last round, at the front of the arrays
+        long queued = 0; // trials of the carried blocks
+        boolean precise = false;
+        try {
+            while (total.count < maxTrials) {
+                long remaining = maxTrials - total.count - queued;
+                int number = (int) Math.min(round, carried + (remaining + BLOCK - 1) / BLOCK);
+                for (int i = carried; i < number; ++i) {
+                    streams[i] = root.split();
+                    sizes[i] = (int) Math.min(BLOCK, remaining - (long) (i - carried) * BLOCK);
+                    blocks[i] = null;
+                }
+                long deadline = reportMillis > 0 ? Math.min(end, reported + reportMillis) : end;
+                pool.invoke(new BlockTask(batches, streams, sizes, blocks, deadline, 0, number));
+                int done = 0;
+                while (!precise && done < number && blocks[done] != null) {
+                    total.merge(blocks[done++]);
+                    precise = total.count > 1 && total.halfWidth() < epsilon;
+                }
+                carried = number - done;
+                queued = 0;
+                for (int i = 0; i < carried; ++i) {
+                    streams[i] = streams[done + i];
+                    sizes[i] = sizes[done + i];
+                    blocks[i] = blocks[done + i];
+                    queued += sizes[i];
+                }
+                long now = System.currentTimeMillis();
+                if (reportMillis > 0 && now - reported >= reportMillis) {
+                    System.err.println(String.format("%d trials, 95%% confidence interval "
+                                                             + "= [%.10f, %.10f]",
+                                                     total.count,
+                                                     total.mean - total.halfWidth(),
+                                                     total.mean + total.halfWidth()));
+                    reported = now;
                 }
-                percolation.open(row, col);
+                if (precise || now >= end) break;
             }
-            stats[i] = (double) percolation.numberOfOpenSites() / (n * n);
         }
-        mean = StdStats.mean(stats);
-        stddev = StdStats.stddev(stats);
+        finally {
+            pool.shutdown();
+        }
+        trials = (int) total.count;
+        mean = total.mean;
+        stddev = total.stddev();
+    }
+
+    /**
+     * number of experiments performed
+     *
+     * @return # of experiments
+     */
+    public int trials() {
+        return trials;
     }
 
     /**
      * sample mean of percolation threshold
      *
-     * @return mean of stats[]
+     * @return mean of thresholds
      */
     public double mean() {
         return mean;
@@ -93,8 +302,19 @@ public class PercolationStats {
     public static void main(String[] args) {
         Stopwatch stopwatch = new Stopwatch();
         int n = Integer.parseInt(args[0]);
-        int trails = Integer.parseInt(args[1]);
-        PercolationStats percolationStats = new PercolationStats(n, trails);
+        double target = Double.parseDouble(args[1]);
+        int threads = args.length > 2 ? Integer.parseInt(args[2])
+                                      : Runtime.getRuntime().availableProcessors();
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : StdRandom.getSeed();
+        long budget = args.length > 4 ? Long.parseLong(args[4]) * 1000 : Long.MAX_VALUE;
+        // a target below 1 is the precision of the adaptive mode, otherwise the trial count, the
+        // time budget bounds both
+        PercolationStats percolationStats = target < 1
+                                            ? new PercolationStats(n, target, budget, 1000,
+                                                                   seed, threads)
+                                            : new PercolationStats(n, (int) target, 0, budget,
+                                                                   0, seed, threads);
+        double elapsed = stopwatch.elapsedTime();
         System.out.println(String.format("%-24s= %.10f",
                                          "mean ",
                                          percolationStats.mean()));
@@ -105,6 +325,10 @@ public class PercolationStats {
                                          "95% confidence interval ",
                                          percolationStats.confidenceLo(),
                                          percolationStats.confidenceHi()));
-        System.out.printf("Total Runnint Time: %f\n", stopwatch.elapsedTime());
+        System.out.println(String.format("%-24s= %.2f trials/sec on %d threads",
+                                         "throughput",
+                                         percolationStats.trials() / Math.max(elapsed, 1e-3),
+                                         threads));
+        System.out.printf("Total Runnint Time: %f\n", elapsed);
     }
 }
@@ -0,0 +1,231 @@
+/* *****************************************************************************
+ *  Name: Chen Wang
+ *  Date: Apr 17, 2019
+ *  Description: Row streaming percolation check based on Hoshen-Kopelman cluster labeling,
+ *               only the labels of the last row and a Union Find over them are kept
+ *  Usage:
+ *      javac-algs4 StreamingPercolation.java
+ *      java-algs4 StreamingPercolation [width of strip] [number of rows]
+ *                                      [site vacancy probability] [random seed, optional]
+ *      java-algs4 StreamingPercolation [width of strip] [file of packed rows]
+ **************************************************************************** */
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.SplittableRandom;
+
+/**
+ * class to decide whether a strip percolates from its top row to its last row, consuming the
+ * strip one row at a time in O(n) memory, without random access isFull queries
+ */
+public class StreamingPercolation {
+    private final int width;
+    private int[] labels; // labels of the last row, 0 for closed sites, otherwise in [1, count]
+    private int[] current; // labels of the row being consumed
+    private boolean[] top; // top[label]: the cluster of label is connected to the top row
+    private boolean[] merged; // top flags of the Union Find nodes while consuming a row
+    private final int[] parent; // Union Find over the labels of the last row and the new runs
+    private final int[] renamed; // compacted label of each Union Find root
+    private final long[] buffer; // packed row converted from a boolean row
+    private int count;
+    private int rows;
+    private boolean percolates;
+
+    /**
+     * create a strip of width n, with no rows yet
+     *
+     * @param n width of strip
+     * @throws IllegalArgumentException when n is nonpositive
+     */
+    public StreamingPercolation(int n) {
+        if (n <= 0) throw new IllegalArgumentException();
+        width = n;
+        // a row holds at most (n + 1) / 2 runs, so this many nodes cover two rows
+        int nodes = n + 2;
+        labels = new int[n];
+        current = new int[n];
+        top = new boolean[nodes];
+        merged = new boolean[nodes];
+        parent = new int[nodes];
+        renamed = new int[nodes];
+        buffer = new long[(n + 63) >>> 6];
+    }
+
+    /**
+     * find the root of a label, halving the path on the way
+     *
+     * @param label Union Find node
+     * @return the root node
+     */
+    private int find(int label) {
+        while (parent[label] != label) {
+            parent[label] = parent[parent[label]];
+            label = parent[label];
+        }
+        return label;
+    }
+
+    /**
+     * merge the clusters of two labels and their top flags
+     *
+     * @param p first node
+     * @param q second node
+     */
+    private void union(int p, int q) {
+        int rootP = find(p);
+        int rootQ = find(q);
+        if (rootP == rootQ) return;
+        parent[rootP] = rootQ;
+        merged[rootQ] |= merged[rootP];
+    }
+
+    /**
+     * consume the next row
+     *
+     * @param row open flags of the sites of the row
+     * @throws IllegalArgumentException when the row length is not n
+     */
+    public void addRow(boolean[] row) {
+        if (row == null || row.length != width) throw new IllegalArgumentException();
+        for (int i = 0; i < buffer.length; ++i) buffer[i] = 0;
+        for (int j = 0; j < width; ++j)
+            if (row[j]) buffer[j >>> 6] |= 1L << j;
+        addRow(buffer);
+    }
+
+    /**
+     * consume the next row, site j is open when bit (j % 64) of word (j / 64) is set
+     *
+     * @param row packed open flags of the sites of the row
+     * @throws IllegalArgumentException when the row is too short for n sites
+     */
+    public void addRow(long[] row) {
+        if (row == null || row.length < buffer.length) throw new IllegalArgumentException();
+        // labels [1, count] belong to the last row, runs of this row get labels from count + 1
+        for (int i = 0; i <= count; ++i) {
+            parent[i] = i;
+            merged[i] = top[i];
+        }
+        int runs = count;
+        for (int j = 0; j < width; ++j) {
+            if ((row[j >>> 6] & (1L << j)) == 0) {
+                current[j] = 0;
+                continue;
+            }
+            if (j > 0 && current[j - 1] != 0) current[j] = current[j - 1];
+            else {
+                current[j] = ++runs;
+                parent[runs] = runs;
+                merged[runs] = rows == 0;
+            }
+            if (labels[j] != 0) union(current[j], labels[j]);
+        }
+        // compact the roots of this row into [1, count] and keep their top flags
+        for (int i = 0; i <= runs; ++i) renamed[i] = 0;
+        int next = 0;
+        boolean full = false;
+        for (int j = 0; j < width; ++j) {
+            if (current[j] == 0) continue;
+            int root = find(current[j]);
+            if (renamed[root] == 0) {
+                renamed[root] = ++next;
+                top[next] = merged[root];
+                full |= merged[root];
+            }
+            current[j] = renamed[root];
+        }
+        count = next;
+        int[] temp = labels;
+        labels = current;
+        current = temp;
+        rows++;
+        percolates = full;
+    }
+
+    /**
+     * number of rows consumed
+     *
+     * @return # of rows
+     */
+    public int rows() {
+        return rows;
+    }
+
+    /**
+     * does the strip of the consumed rows percolate, i.e. is any site of the last row connected
+     * to the top row? once this is false no further row can make the strip percolate
+     *
+     * @return whether the strip percolates
+     */
+    public boolean percolates() {
+        return percolates;
+    }
+
+    /**
+     * check a strip stored in a file of packed rows, each row takes (n + 63) / 64 longs in
+     * little-endian byte order, the file is memory-mapped segment by segment and reading stops as
+     * soon as no site is connected to the top row any more
+     *
+     * @param file file of packed rows
+     * @param n    width of strip
+     * @return whether the strip percolates
+     * @throws IllegalArgumentException when the file size is not a whole number of rows
+     * @throws UncheckedIOException     when the file cannot be read
+     */
+    public static boolean percolates(Path file, int n) {
+        StreamingPercolation percolation = new StreamingPercolation(n);
+        long[] row = new long[(n + 63) >>> 6];
+        long rowBytes = row.length * 8L;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size == 0 || size % rowBytes != 0) throw new IllegalArgumentException();
+            long segmentRows = Math.max(1, (Integer.MAX_VALUE / rowBytes));
+            for (long first = 0; first * rowBytes < size; first += segmentRows) {
+                long length = Math.min(segmentRows * rowBytes, size - first * rowBytes);
+                LongBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY,
+                                                 first * rowBytes, length)
+                                            .order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+                while (segment.hasRemaining()) {
+                    segment.get(row);
+                    percolation.addRow(row);
+                    if (!percolation.percolates()) return false;
+                }
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return percolation.percolates();
+    }
+
+    /**
+     * main function to check a random strip or a strip stored in a file
+     *
+     * @param args command line arguments
+     */
+    public static void main(String[] args) {
+        int n = Integer.parseInt(args[0]);
+        if (args.length == 2) {
+            System.out.println("percolates = " + percolates(Path.of(args[1]), n));
+            return;
+        }
+        int number = Integer.parseInt(args[1]);
+        double p = Double.parseDouble(args[2]);
+        SplittableRandom random = args.length > 3 ? new SplittableRandom(Long.parseLong(args[3]))
+                                                  : new SplittableRandom();
+        StreamingPercolation percolation = new StreamingPercolation(n);
+        boolean[] row = new boolean[n];
+        for (int i = 0; i < number; ++i) {
+            for (int j = 0; j < n; ++j) row[j] = random.nextDouble() < p;
+            percolation.addRow(row);
+            if (!percolation.percolates()) break;
+        }
+        System.out.println(String.format("percolates = %b after %d rows",
+                                         percolation.percolates(), percolation.rows()));
+    }
+}